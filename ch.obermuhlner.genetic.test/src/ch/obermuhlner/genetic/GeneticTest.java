@@ -0,0 +1,64 @@
+package ch.obermuhlner.genetic;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class GeneticTest {
+
+	@Test
+	public void testParallelSameAsSequential() {
+		Genetic<Integer> sequentialGenetic = createGenetic();
+		sequentialGenetic.run();
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		Set<Thread> evaluatorThreads = ConcurrentHashMap.newKeySet();
+		AtomicInteger evaluatorCount = new AtomicInteger();
+		Genetic<Integer> parallelGenetic = createGenetic();
+		parallelGenetic.setExecutor(executor, () -> {
+			evaluatorCount.incrementAndGet();
+			evaluatorThreads.add(Thread.currentThread());
+			return GeneticTest::evaluate;
+		});
+		parallelGenetic.run();
+		executor.shutdown();
+
+		assertEquals(sequentialGenetic.getPopulation(), parallelGenetic.getPopulation());
+		// one evaluator per thread
+		assertEquals(evaluatorThreads.size(), evaluatorCount.get());
+	}
+
+	@Test
+	public void testSeed() {
+		Genetic<Integer> genetic1 = createGenetic();
+		genetic1.run();
+		Genetic<Integer> genetic2 = createGenetic();
+		genetic2.run();
+
+		List<Integer> population = genetic1.getPopulation();
+		assertEquals(20, population.size());
+		assertEquals(population, genetic2.getPopulation());
+	}
+
+	private static Genetic<Integer> createGenetic() {
+		AtomicInteger nextGenome = new AtomicInteger();
+		Genetic<Integer> genetic = new Genetic<>(() -> nextGenome.getAndIncrement() * 7 % 20, GeneticTest::evaluate, genome -> genome + 1);
+		genetic.setSeed(1234);
+		genetic.setPopulationCount(20);
+		genetic.setEvaluationCount(5);
+		genetic.setStepCount(3);
+		return genetic;
+	}
+
+	// slightly intransitive so that the result depends on the pairings
+	private static double evaluate(Integer first, Integer second) {
+		return Math.sin(first * 0.7) - Math.sin(second * 1.3) + (first - second) * 0.01;
+	}
+}
@@ -0,0 +1,95 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import ch.obermuhlner.genetic.chess.engine.AlphaBetaChessEngine.BestMoveCalculationState;
+
+public class AlphaBetaChessEngineTest {
+
+	@Test
+	public void testSortMovesHashMoveFirst() {
+		Board board = new Board();
+		board.setFenString("r1bqkbnr/pppp1ppp/2n5/4p3/3PP3/8/PPP2PPP/RNBQKBNR w");
+		
+		AlphaBetaChessEngine chessEngine = new AlphaBetaChessEngine();
+		BestMoveCalculationState state = chessEngine.new BestMoveCalculationState(0, new CancellationToken(), 0);
+		
+		Move hashMove = findMove(board, "g1f3");
+		Move captureMove = findMove(board, "d4e5");
+		Move killerMove = findMove(board, "b1c3");
+		Move historyMove = findMove(board, "f1c4");
+		
+		state.addKillerMove(AbstractChessEngine.toMoveCode(killerMove), 0);
+		// a history far beyond any realistic search
+		for (int i = 0; i < 10000; i++) {
+			state.addHistoryScore(AbstractChessEngine.toMoveCode(historyMove), 64);
+			state.addHistoryScore(AbstractChessEngine.toMoveCode(hashMove), 64);
+		}
+		
+		List<Move> moves = board.getAllMoves();
+		state.sortMoves(board, moves, AbstractChessEngine.toMoveCode(hashMove), 0);
+		assertEquals(hashMove.toString(), moves.get(0).toString());
+		
+		moves = board.getAllMoves();
+		state.sortMoves(board, moves, 0, 0);
+		assertEquals(captureMove.toString(), moves.get(0).toString());
+		assertEquals(killerMove.toString(), moves.get(1).toString());
+		assertTrue(indexOf(moves, historyMove) > 1);
+	}
+
+	@Test
+	public void testBestMoveWithoutTime() {
+		AlphaBetaChessEngine chessEngine = new AlphaBetaChessEngine();
+		chessEngine.setInfoLogger(message -> {});
+		chessEngine.setStartPosition();
+		
+		assertLegalMove(chessEngine, chessEngine.bestMove(0).getFuture().join());
+		chessEngine.shutdown();
+	}
+
+	@Test
+	public void testBestMoveStoppedImmediately() {
+		AlphaBetaChessEngine chessEngine = new AlphaBetaChessEngine();
+		chessEngine.setInfoLogger(message -> {});
+		chessEngine.setStartPosition();
+		
+		CancellationToken cancellationToken = new CancellationToken();
+		cancellationToken.cancel();
+		assertLegalMove(chessEngine, chessEngine.bestMove(60000, cancellationToken).getFuture().join());
+		
+		// the move has a real score even if there is no time at all - the pawn about to promote is captured
+		chessEngine.setFen("4k3/8/8/8/8/8/3p4/3QK3 w");
+		cancellationToken = new CancellationToken();
+		cancellationToken.cancel();
+		assertTrue(chessEngine.bestMove(60000, cancellationToken).getFuture().join().endsWith("d2"));
+		chessEngine.shutdown();
+	}
+
+	private static void assertLegalMove(ChessEngine chessEngine, String move) {
+		Board board = new Board();
+		board.setFenString(chessEngine.getFen());
+		findMove(board, move);
+	}
+
+	private static Move findMove(Board board, String moveString) {
+		for (Move move : board.getAllMoves()) {
+			if (AbstractChessEngine.toMoveString(move).equals(moveString)) {
+				return move;
+			}
+		}
+		throw new IllegalArgumentException("Move not found: " + moveString);
+	}
+
+	private static int indexOf(List<Move> moves, Move move) {
+		for (int i = 0; i < moves.size(); i++) {
+			if (moves.get(i).toString().equals(move.toString())) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
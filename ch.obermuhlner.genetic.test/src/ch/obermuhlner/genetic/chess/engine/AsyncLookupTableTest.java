@@ -0,0 +1,146 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class AsyncLookupTableTest {
+
+	private static final InfoLogger NO_LOGGER = message -> {};
+
+	private HttpServer server;
+	private final AtomicInteger requestCount = new AtomicInteger();
+	private volatile long responseDelayMillis;
+
+	@Before
+	public void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/api", exchange -> {
+			requestCount.incrementAndGet();
+			sleep(responseDelayMillis);
+			
+			String query = exchange.getRequestURI().getQuery();
+			String json = query.contains("Q") ? "{\n  \"bestmove\": \"a7g7\"\n}" : "{\n  \"moves\": {}\n}";
+			byte[] bytes = json.getBytes("UTF-8");
+			exchange.sendResponseHeaders(200, bytes.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(bytes);
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	public void testCached() {
+		AsyncLookupTable lookupTable = new AsyncLookupTable(createRestLookupTable(), 1000, 10, 60000);
+		
+		assertEquals("a7g7", lookupTable.bestMove(createBoard("7k/Q7/6K1/8/8/8/8/8 w"), NO_LOGGER));
+		assertEquals("a7g7", lookupTable.bestMove(createBoard("7k/Q7/6K1/8/8/8/8/8 w"), NO_LOGGER));
+		assertEquals(1, requestCount.get());
+		
+		// negative result is cached as well
+		assertNull(lookupTable.bestMove(createBoard("7k/R7/6K1/8/8/8/8/8 w"), NO_LOGGER));
+		assertNull(lookupTable.bestMove(createBoard("7k/R7/6K1/8/8/8/8/8 w"), NO_LOGGER));
+		assertEquals(2, requestCount.get());
+		assertEquals(2, lookupTable.getCacheSize());
+	}
+
+	@Test
+	public void testDeadline() {
+		responseDelayMillis = 500;
+		AsyncLookupTable lookupTable = new AsyncLookupTable(createRestLookupTable(), 50, 10, 60000);
+		
+		long startMillis = System.currentTimeMillis();
+		assertNull(lookupTable.bestMove(createBoard("7k/Q7/6K1/8/8/8/8/8 w"), NO_LOGGER));
+		assertTrue(System.currentTimeMillis() - startMillis < 400);
+		
+		// a second call while the first is pending does not send another request
+		assertNull(lookupTable.bestMove(createBoard("7k/Q7/6K1/8/8/8/8/8 w"), NO_LOGGER));
+		
+		sleep(1000);
+		assertEquals("a7g7", lookupTable.bestMove(createBoard("7k/Q7/6K1/8/8/8/8/8 w"), NO_LOGGER));
+		assertEquals(1, requestCount.get());
+	}
+
+	@Test
+	public void testRefresh() {
+		AsyncLookupTable lookupTable = new AsyncLookupTable(createRestLookupTable(), 1000, 10, 0);
+		
+		assertEquals("a7g7", lookupTable.bestMove(createBoard("7k/Q7/6K1/8/8/8/8/8 w"), NO_LOGGER));
+		sleep(10);
+		
+		// outdated entry is returned and refreshed in the background
+		assertEquals("a7g7", lookupTable.bestMove(createBoard("7k/Q7/6K1/8/8/8/8/8 w"), NO_LOGGER));
+		sleep(500);
+		assertEquals(2, requestCount.get());
+	}
+
+	@Test
+	public void testFailureNotCached() {
+		AtomicInteger lookupCount = new AtomicInteger();
+		LookupTable failingOnceLookupTable = new LookupTable() {
+			@Override
+			public String bestMove(Board board, InfoLogger infoLogger) {
+				if (lookupCount.incrementAndGet() == 1) {
+					throw new IllegalStateException("network down");
+				}
+				return "a7g7";
+			}
+		};
+		AsyncLookupTable lookupTable = new AsyncLookupTable(failingOnceLookupTable, 1000, 10, 60000);
+		lookupTable.setFailureRetryMillis(100);
+		
+		assertNull(lookupTable.bestMove(createBoard("7k/Q7/6K1/8/8/8/8/8 w"), NO_LOGGER));
+		
+		// no new request until the retry time has passed
+		assertNull(lookupTable.bestMove(createBoard("7k/Q7/6K1/8/8/8/8/8 w"), NO_LOGGER));
+		assertEquals(1, lookupCount.get());
+		
+		sleep(200);
+		assertEquals("a7g7", lookupTable.bestMove(createBoard("7k/Q7/6K1/8/8/8/8/8 w"), NO_LOGGER));
+		assertEquals("a7g7", lookupTable.bestMove(createBoard("7k/Q7/6K1/8/8/8/8/8 w"), NO_LOGGER));
+		assertEquals(2, lookupCount.get());
+	}
+
+	// an unreachable server is a failure, not a position without a move
+	@Test(expected = UncheckedIOException.class)
+	public void testServerDown() {
+		SyzygyRestLookupTable restLookupTable = createRestLookupTable();
+		server.stop(0);
+		
+		restLookupTable.bestMove(createBoard("7k/Q7/6K1/8/8/8/8/8 w"), NO_LOGGER);
+	}
+
+	private SyzygyRestLookupTable createRestLookupTable() {
+		return new SyzygyRestLookupTable("http://localhost:" + server.getAddress().getPort() + "/api", 2000);
+	}
+
+	private static Board createBoard(String fen) {
+		Board board = new Board();
+		board.setFenString(fen);
+		return board;
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			// ignore
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BatchPlayoutTest {
+
+	@Test
+	public void testMate() {
+		BatchPlayout batchPlayout = play("7k/6Q1/6K1/8/8/8/8/8 b", 10, 10);
+		assertEquals(10, batchPlayout.getWhiteWinCount());
+		assertEquals(0, batchPlayout.getSimulatedPlies());
+	}
+
+	@Test
+	public void testPatt() {
+		BatchPlayout batchPlayout = play("7k/8/6QK/8/8/8/8/8 b", 10, 10);
+		assertEquals(0, batchPlayout.getWhiteWinCount());
+		assertEquals(0, batchPlayout.getBlackWinCount());
+		assertEquals(null, batchPlayout.getWinner(0));
+	}
+
+	@Test
+	public void testInsufficientMaterial() {
+		BatchPlayout batchPlayout = play("4k3/8/8/8/8/8/8/4KB2 w", 10, 10);
+		assertEquals(0, batchPlayout.getWhiteWinCount());
+		assertEquals(0, batchPlayout.getBlackWinCount());
+		assertEquals(0, batchPlayout.getSimulatedPlies());
+	}
+
+	@Test
+	public void testStartPosition() {
+		BatchPlayout batchPlayout = play("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w", 100, 20);
+		assertTrue(batchPlayout.getSimulatedPlies() > 0);
+		assertTrue(batchPlayout.getSimulatedPlies() <= 100 * 20);
+		assertTrue(batchPlayout.getWhiteWinCount() + batchPlayout.getBlackWinCount() <= 100);
+	}
+
+	private BatchPlayout play(String fen, int gameCount, int moveCount) {
+		Board board = new Board();
+		board.setFenString(fen);
+		
+		BatchPlayout batchPlayout = new BatchPlayout(gameCount);
+		batchPlayout.setup(board);
+		batchPlayout.play(new Random(1234), moveCount, new PlayoutAdjudicator());
+		return batchPlayout;
+	}
+}
@@ -0,0 +1,43 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class BenchTest {
+
+	private static final InfoLogger NO_LOGGER = message -> {};
+
+	@Test
+	public void testMonteCarloRepeatable() {
+		Bench.Result result1 = runBench(new MonteCarloChessEngine(), 40, 1);
+		Bench.Result result2 = runBench(new MonteCarloChessEngine(), 40, 1);
+
+		assertEquals(8 * 40, result1.getPlayoutCount());
+		assertTrue(result1.getNodeCount() > result1.getPlayoutCount());
+		assertEquals(result1.getNodeCount(), result2.getNodeCount());
+		assertEquals(result1.getSignature(), result2.getSignature());
+
+		Bench.Result otherSeedResult = runBench(new MonteCarloChessEngine(), 40, 2);
+		assertNotEquals(result1.getSignature(), otherSeedResult.getSignature());
+	}
+
+	@Test
+	public void testAlphaBetaRepeatable() {
+		AlphaBetaChessEngine chessEngine = new AlphaBetaChessEngine();
+		Bench.Result result1 = runBench(chessEngine, 200, 1);
+		// the same engine again, the transposition table must not influence the result
+		Bench.Result result2 = runBench(chessEngine, 200, 1);
+
+		assertEquals(0, result1.getPlayoutCount());
+		assertTrue(result1.getNodeCount() >= 8 * 200);
+		assertEquals(result1.getNodeCount(), result2.getNodeCount());
+		assertEquals(result1.getSignature(), result2.getSignature());
+		chessEngine.shutdown();
+	}
+
+	private static Bench.Result runBench(ChessEngine chessEngine, long budget, long seed) {
+		chessEngine.setInfoLogger(NO_LOGGER);
+		return Bench.run(chessEngine, budget, seed, NO_LOGGER);
+	}
+}
@@ -252,6 +252,80 @@ public class BoardTest {
 		assertMoves(board.getAllMoves(), "a2");
 	}	
 
+	@Test
+	public void testFiftyMoveNumber() {
+		Board board = new Board();
+		board.setStartPosition();
+		board.move("g1f3");
+		board.move("g8f6");
+		assertEquals(2, board.getFiftyMoveNumber());
+		board.move("e2e4"); // pawn move
+		assertEquals(0, board.getFiftyMoveNumber());
+		board.move("b8c6");
+		board.move("f3e5");
+		assertEquals(2, board.getFiftyMoveNumber());
+		board.move("c6e5"); // capture
+		assertEquals(0, board.getFiftyMoveNumber());
+		assertEquals(false, board.isFiftyMoveRule());
+		
+		board.setFenString("4k3/8/8/8/8/8/8/3QK3 w - - 99 80");
+		assertEquals(false, board.isFiftyMoveRule());
+		board.move("d1d2");
+		assertEquals(true, board.isFiftyMoveRule());
+	}
+	
+	@Test
+	public void testRepetitionCount() {
+		Board board = new Board();
+		board.setStartPosition();
+		long startHash = board.getHash();
+		assertEquals(0, board.getRepetitionCount());
+		
+		board.move("g1f3");
+		board.move("g8f6");
+		board.move("f3g1");
+		board.move("f6g8");
+		assertEquals(startHash, board.getHash());
+		assertEquals(1, board.getRepetitionCount());
+		
+		Board clone = board.clone();
+		clone.move("g1f3");
+		clone.move("g8f6");
+		clone.move("f3g1");
+		clone.move("f6g8");
+		assertEquals(2, clone.getRepetitionCount());
+		
+		board.move("e2e4"); // pawn move resets history
+		assertEquals(0, board.getRepetitionCount());
+	}
+
+	@Test
+	public void testHashIndependentOfSetup() {
+		Board board1 = new Board();
+		board1.setStartPosition();
+		board1.move("e2e4");
+		
+		Board board2 = new Board();
+		board2.setFenString("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b");
+		assertEquals(board2.getHash(), board1.getHash());
+		
+		Board board3 = newBoard(Side.White, "Ka1", "kh8");
+		Board board4 = newBoard(Side.Black, "Ka1", "kh8");
+		assertNotEquals(board3.getHash(), board4.getHash());
+	}
+
+	@Test
+	public void testInsufficientMaterial() {
+		assertEquals(true, newBoard(Side.White, "Ka1", "kh8").isInsufficientMaterial());
+		assertEquals(true, newBoard(Side.White, "Ka1", "Nb1", "kh8").isInsufficientMaterial());
+		assertEquals(true, newBoard(Side.White, "Ka1", "Bb1", "kh8").isInsufficientMaterial());
+		assertEquals(true, newBoard(Side.White, "Ka1", "Bc1", "kh8", "bf8").isInsufficientMaterial()); // same square color
+		assertEquals(false, newBoard(Side.White, "Ka1", "Bc1", "kh8", "bc8").isInsufficientMaterial()); // different square color
+		assertEquals(false, newBoard(Side.White, "Ka1", "Nb1", "kh8", "nb8").isInsufficientMaterial());
+		assertEquals(false, newBoard(Side.White, "Ka1", "Pb2", "kh8").isInsufficientMaterial());
+		assertEquals(false, newBoard(Side.White, "Ka1", "Rb1", "kh8").isInsufficientMaterial());
+	}
+
 	private List<Move> whiteToMove(String... positions) {
 		Board board = newBoard(Side.White, positions);
 		return board.getAllMoves();
@@ -0,0 +1,103 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import ch.obermuhlner.genetic.chess.engine.ChessEngine.CalculationState;
+
+public class CalculationStateTest {
+
+	private static final InfoLogger NO_LOGGER = message -> {};
+
+	private static final int STOP_TRIALS = 7;
+
+	@Test
+	public void testMonteCarloCompletes() throws Exception {
+		assertCompletesInTime(new MonteCarloChessEngine());
+	}
+
+	@Test
+	public void testAlphaBetaCompletes() throws Exception {
+		assertCompletesInTime(new AlphaBetaChessEngine());
+	}
+
+	@Test
+	public void testMonteCarloStop() throws Exception {
+		assertStopsImmediately(new MonteCarloChessEngine());
+	}
+
+	@Test
+	public void testAlphaBetaStop() throws Exception {
+		assertStopsImmediately(new AlphaBetaChessEngine());
+	}
+
+	@Test
+	public void testFailedCalculation() {
+		AbstractCalculationState<String> failedAfterProgress = new AbstractCalculationState<String>(new CancellationToken()) {
+			@Override
+			protected String calculate() {
+				fireProgress("e2e4");
+				throw new IllegalStateException("search failed");
+			}
+		};
+		failedAfterProgress.run();
+		assertEquals("e2e4", failedAfterProgress.getFuture().join());
+		
+		AbstractCalculationState<String> failedWithoutProgress = new AbstractCalculationState<String>(new CancellationToken()) {
+			@Override
+			protected String calculate() {
+				throw new IllegalStateException("search failed");
+			}
+		};
+		failedWithoutProgress.run();
+		assertTrue(failedWithoutProgress.getFuture().isCompletedExceptionally());
+	}
+
+	private static void assertCompletesInTime(ChessEngine chessEngine) throws Exception {
+		chessEngine.setInfoLogger(NO_LOGGER);
+		chessEngine.setStartPosition();
+		
+		long startMillis = System.currentTimeMillis();
+		CalculationState<String> calculationState = chessEngine.bestMove(500);
+		List<String> progress = new CopyOnWriteArrayList<>();
+		calculationState.addProgressListener(progress::add);
+		
+		String bestMove = calculationState.getFuture().get(2, TimeUnit.SECONDS);
+		long millis = System.currentTimeMillis() - startMillis;
+		
+		assertNotNull(bestMove);
+		assertTrue(calculationState.isFinished());
+		assertTrue("took " + millis + " ms", millis < 1000);
+		assertFalse(progress.isEmpty());
+	}
+
+	// median latency from the cancellation until the best move is available
+	private static void assertStopsImmediately(ChessEngine chessEngine) throws Exception {
+		chessEngine.setInfoLogger(NO_LOGGER);
+		chessEngine.setStartPosition();
+		
+		long[] latencyNanos = new long[STOP_TRIALS];
+		for (int trial = 0; trial < STOP_TRIALS; trial++) {
+			CancellationToken cancellationToken = new CancellationToken();
+			CalculationState<String> calculationState = chessEngine.bestMove(60000, cancellationToken);
+			Thread.sleep(300);
+			
+			long stopNanos = System.nanoTime();
+			cancellationToken.cancel();
+			String bestMove = calculationState.getFuture().get(2, TimeUnit.SECONDS);
+			latencyNanos[trial] = System.nanoTime() - stopNanos;
+			
+			assertNotNull(bestMove);
+		}
+		
+		Arrays.sort(latencyNanos);
+		long medianMicros = latencyNanos[STOP_TRIALS / 2] / 1000;
+		assertTrue("stop latency " + medianMicros + " us", medianMicros < 5000);
+	}
+}
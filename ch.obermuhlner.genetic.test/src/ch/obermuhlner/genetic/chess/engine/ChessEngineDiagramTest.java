@@ -0,0 +1,76 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.obermuhlner.genetic.chess.engine.MonteCarloChessEngine.EntityWithValue;
+
+public class ChessEngineDiagramTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testRenderDiagram() {
+		Board board = new Board();
+		board.setStartPosition();
+		Board emptyBoard = new Board();
+		emptyBoard.setFenString("8/8/8/8/8/8/8/8 w");
+
+		BufferedImage image = ChessEngineDiagram.renderDiagram(board, null, null);
+		BufferedImage emptyImage = ChessEngineDiagram.renderDiagram(emptyBoard, null, null);
+
+		assertEquals(8 * 55, image.getWidth());
+		assertEquals(8 * 55, image.getHeight());
+		// center of the white king on e1 is covered by the piece image
+		assertNotEquals(emptyImage.getRGB(4 * 55 + 27, 7 * 55 + 27), image.getRGB(4 * 55 + 27, 7 * 55 + 27));
+	}
+
+	@Test
+	public void testCreateDiagramAsyncUsesSnapshot() throws Exception {
+		Board board = new Board();
+		board.setStartPosition();
+		List<EntityWithValue<Move>> moves = new ArrayList<>();
+		for (Move move : board.getAllMoves()) {
+			moves.add(new EntityValueTuple<>(move, 0.5));
+		}
+
+		File file = new File(temporaryFolder.getRoot(), "diagram.png");
+		CompletableFuture<File> diagramFuture = ChessEngineDiagram.createDiagramAsync(file.getPath(), board, null, moves);
+		// changes after the call do not affect the diagram
+		moves.clear();
+		board.move("e2e4");
+		File diagramFile = diagramFuture.join();
+
+		assertEquals(file, diagramFile);
+		assertNotNull(ImageIO.read(diagramFile));
+	}
+
+	@Test
+	public void testCreateDiagrams() throws Exception {
+		List<String> fens = Arrays.asList(
+				"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w",
+				"r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w",
+				"4k3/8/8/8/8/8/4P3/4K3 w");
+
+		List<File> diagramFiles = ChessEngineDiagram.createDiagrams(fens, temporaryFolder.getRoot()).join();
+
+		assertEquals(3, diagramFiles.size());
+		for (File diagramFile : diagramFiles) {
+			assertEquals(temporaryFolder.getRoot(), diagramFile.getParentFile());
+			assertEquals(8 * 55, ImageIO.read(diagramFile).getWidth());
+		}
+	}
+}
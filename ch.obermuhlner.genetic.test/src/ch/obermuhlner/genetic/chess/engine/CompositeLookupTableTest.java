@@ -0,0 +1,134 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class CompositeLookupTableTest {
+
+	private static final InfoLogger NO_LOGGER = message -> {};
+
+	private static LookupTable slowLookupTable(String move, long millis) {
+		return new LookupTable() {
+			@Override
+			public String bestMove(Board board, InfoLogger infoLogger) {
+				try {
+					Thread.sleep(millis);
+				} catch (InterruptedException e) {
+					return null;
+				}
+				return move;
+			}
+		};
+	}
+
+	@Test
+	public void testSequential() {
+		CompositeLookupTable lookupTable = new CompositeLookupTable(slowLookupTable(null, 0), slowLookupTable("e2e4", 0), slowLookupTable("d2d4", 0));
+		
+		assertEquals("e2e4", lookupTable.bestMove(createStartBoard(), NO_LOGGER));
+	}
+
+	@Test
+	public void testParallelPriority() {
+		CompositeLookupTable lookupTable = new CompositeLookupTable(slowLookupTable("e2e4", 200), slowLookupTable("d2d4", 0));
+		lookupTable.setParallel(true);
+		
+		assertEquals("e2e4", lookupTable.bestMove(createStartBoard(), NO_LOGGER));
+	}
+
+	@Test
+	public void testParallelLatency() {
+		CompositeLookupTable lookupTable = new CompositeLookupTable(slowLookupTable(null, 300), slowLookupTable(null, 300), slowLookupTable("d2d4", 300));
+		lookupTable.setParallel(true);
+		
+		long startMillis = System.currentTimeMillis();
+		assertEquals("d2d4", lookupTable.bestMove(createStartBoard(), NO_LOGGER));
+		long millis = System.currentTimeMillis() - startMillis;
+		assertTrue("took " + millis + " ms", millis < 600);
+	}
+
+	@Test
+	public void testParallelCancelsLowerPriority() throws InterruptedException {
+		CountDownLatch interrupted = new CountDownLatch(1);
+		LookupTable blockingLookupTable = new LookupTable() {
+			@Override
+			public String bestMove(Board board, InfoLogger infoLogger) {
+				try {
+					Thread.sleep(10000);
+				} catch (InterruptedException e) {
+					interrupted.countDown();
+				}
+				return "a2a3";
+			}
+		};
+		CompositeLookupTable lookupTable = new CompositeLookupTable(slowLookupTable("e2e4", 50), blockingLookupTable);
+		lookupTable.setParallel(true);
+		
+		assertEquals("e2e4", lookupTable.bestMove(createStartBoard(), NO_LOGGER));
+		assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testSpeculate() throws InterruptedException {
+		AtomicInteger lookupCount = new AtomicInteger();
+		LookupTable countingLookupTable = new LookupTable() {
+			@Override
+			public String bestMove(Board board, InfoLogger infoLogger) {
+				lookupCount.incrementAndGet();
+				return board.getAllMoves().get(0).toUciString();
+			}
+		};
+		CompositeLookupTable lookupTable = new CompositeLookupTable(countingLookupTable);
+		lookupTable.setParallel(true);
+		
+		Board board = createStartBoard();
+		lookupTable.speculate(board, NO_LOGGER);
+		int moveCount = board.getAllMoves().size();
+		for (int i = 0; i < 100 && lookupCount.get() < moveCount; i++) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(10);
+		assertEquals(moveCount, lookupCount.get());
+		
+		board.move("e2e4");
+		String bestMove = lookupTable.bestMove(board, NO_LOGGER);
+		assertEquals(board.getAllMoves().get(0).toUciString(), bestMove);
+		assertEquals(moveCount, lookupCount.get());
+	}
+
+	@Test
+	public void testSpeculateMissIsProbedAgain() throws InterruptedException {
+		AtomicInteger lookupCount = new AtomicInteger();
+		LookupTable failingOnceLookupTable = new LookupTable() {
+			@Override
+			public String bestMove(Board board, InfoLogger infoLogger) {
+				// the speculations fail (for example a timeout), the later probes answer
+				return lookupCount.incrementAndGet() <= 20 ? null : "g1f3";
+			}
+		};
+		CompositeLookupTable lookupTable = new CompositeLookupTable(failingOnceLookupTable);
+		
+		Board board = createStartBoard();
+		lookupTable.speculate(board, NO_LOGGER);
+		for (int i = 0; i < 100 && lookupCount.get() < 20; i++) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(10);
+		assertEquals(20, lookupCount.get());
+		
+		board.move("e2e4");
+		assertEquals("g1f3", lookupTable.bestMove(board, NO_LOGGER));
+		assertEquals(21, lookupCount.get());
+	}
+
+	private static Board createStartBoard() {
+		Board board = new Board();
+		board.setStartPosition();
+		return board;
+	}
+}
@@ -0,0 +1,77 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class EndgameTableGeneratorTest {
+
+	private static final InfoLogger NO_LOGGER = message -> {};
+
+	private static File directory;
+	private static EndgameTablebase endgameTablebase;
+
+	@BeforeClass
+	public static void generate() throws IOException {
+		directory = Files.createTempDirectory("tablebase").toFile();
+		directory.deleteOnExit();
+		
+		endgameTablebase = new EndgameTablebase(directory);
+		new EndgameTableGenerator(endgameTablebase, directory).generate("KQvK");
+		new File(directory, "KQvK.egt").deleteOnExit();
+	}
+
+	@Test
+	public void testProbe() {
+		assertEquals(-1, endgameTablebase.probe(createBoard("7k/6Q1/6K1/8/8/8/8/8 b")));
+		assertEquals(1, endgameTablebase.probe(createBoard("7k/Q7/6K1/8/8/8/8/8 w")));
+		assertEquals(-17, endgameTablebase.probe(createBoard("k7/8/8/8/8/8/8/6QK b")));
+		
+		// stalemate and unprotected queen
+		assertEquals(EndgameTable.DRAW, endgameTablebase.probe(createBoard("7k/5Q2/6K1/8/8/8/8/8 b")));
+		assertEquals(EndgameTable.DRAW, endgameTablebase.probe(createBoard("8/8/8/8/8/8/1k6/1Q5K b")));
+		
+		// colors swapped
+		assertEquals(-17, endgameTablebase.probe(createBoard("6qk/8/8/8/8/8/8/K7 w")));
+	}
+
+	@Test
+	public void testLongestMate() {
+		EndgameTable table = endgameTablebase.getTable("KQvK");
+		int maxDistance = 0;
+		for (int index = 0; index < table.size(); index++) {
+			maxDistance = Math.max(maxDistance, EndgameTable.getDistanceToMate(table.getValue(index)));
+		}
+		// mate in 10 moves
+		assertEquals(20, maxDistance);
+	}
+
+	@Test
+	public void testPlayMate() {
+		Board board = createBoard("k7/8/8/8/8/8/8/6QK b");
+		int plies = 0;
+		while (!board.isFinished()) {
+			board.move(endgameTablebase.bestMove(board, NO_LOGGER));
+			plies++;
+		}
+		assertTrue(board.isMate());
+		assertEquals(16, plies);
+	}
+
+	@Test
+	public void testLoadCached() {
+		EndgameTablebase cachedTablebase = new EndgameTablebase(directory);
+		assertEquals(-17, cachedTablebase.probe(createBoard("k7/8/8/8/8/8/8/6QK b")));
+	}
+
+	private static Board createBoard(String fen) {
+		Board board = new Board();
+		board.setFenString(fen);
+		return board;
+	}
+}
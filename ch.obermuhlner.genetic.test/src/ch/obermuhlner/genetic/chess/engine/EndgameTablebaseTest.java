@@ -0,0 +1,104 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+public class EndgameTablebaseTest {
+
+	private static final InfoLogger NO_LOGGER = message -> {};
+
+	@Test
+	public void testSignature() {
+		assertEquals("KQvK", EndgameTable.getSignature(createBoard("7k/Q7/6K1/8/8/8/8/8 w")));
+		assertEquals("KvKRP", EndgameTable.getSignature(createBoard("7k/7p/6K1/8/8/8/8/6r1 w")));
+		assertEquals("KRPvK", EndgameTable.getFlippedSignature("KvKRP"));
+	}
+
+	@Test
+	public void testIndex() {
+		int[] squares = { 3, 63, 17 };
+		int index = EndgameTable.getIndex(squares, Side.Black);
+		assertEquals(Side.Black, EndgameTable.getSideToMove(index));
+		assertEquals(3, EndgameTable.getSquare(index, 0));
+		assertEquals(63, EndgameTable.getSquare(index, 1));
+		assertEquals(17, EndgameTable.getSquare(index, 2));
+	}
+
+	@Test
+	public void testProbe() throws IOException {
+		EndgameTablebase endgameTablebase = new EndgameTablebase();
+		endgameTablebase.addTable(createMateInOneTable());
+		
+		assertEquals(1, endgameTablebase.probe(createBoard("7k/Q7/6K1/8/8/8/8/8 w")));
+		assertEquals(-1, endgameTablebase.probe(createBoard("7k/6Q1/6K1/8/8/8/8/8 b")));
+		assertEquals(EndgameTablebase.UNKNOWN, endgameTablebase.probe(createBoard("7k/8/6K1/8/8/8/8/5Q2 w")));
+		assertEquals(EndgameTable.DRAW, endgameTablebase.probe(createBoard("7k/8/6K1/8/8/8/8/8 w")));
+		
+		// colors swapped
+		assertEquals(1, endgameTablebase.probe(createBoard("8/8/8/8/8/6k1/q7/7K b")));
+		
+		assertEquals("a7g7", endgameTablebase.bestMove(createBoard("7k/Q7/6K1/8/8/8/8/8 w"), NO_LOGGER));
+		assertEquals(Side.White, endgameTablebase.getWinner(createBoard("7k/Q7/6K1/8/8/8/8/8 w"), 1));
+	}
+
+	@Test
+	public void testSaveLoad() throws IOException {
+		File directory = Files.createTempDirectory("tablebase").toFile();
+		directory.deleteOnExit();
+		EndgameTable table = createMateInOneTable();
+		table.save(directory);
+		new File(directory, "KQvK.egt").deleteOnExit();
+		
+		EndgameTablebase endgameTablebase = new EndgameTablebase(directory);
+		assertEquals(1, endgameTablebase.probe(createBoard("7k/Q7/6K1/8/8/8/8/8 w")));
+		assertEquals(-1, endgameTablebase.probe(createBoard("7k/6Q1/6K1/8/8/8/8/8 b")));
+		assertEquals(EndgameTablebase.UNKNOWN, endgameTablebase.probe(createBoard("7k/8/6K1/8/8/8/8/6R1 w")));
+	}
+
+	@Test
+	public void testContainsSyzygyTables() throws IOException {
+		File directory = Files.createTempDirectory("tablebase").toFile();
+		directory.deleteOnExit();
+		assertFalse(EndgameTablebase.containsSyzygyTables(directory));
+		
+		File file = new File(directory, "KQvK.rtbw");
+		file.createNewFile();
+		file.deleteOnExit();
+		assertTrue(EndgameTablebase.containsSyzygyTables(directory));
+		
+		// the Syzygy file is not mistaken for a table
+		EndgameTablebase endgameTablebase = new EndgameTablebase(directory);
+		assertEquals(EndgameTablebase.UNKNOWN, endgameTablebase.probe(createBoard("7k/Q7/6K1/8/8/8/8/8 w")));
+	}
+
+	@Test
+	public void testPlayoutAdjudicator() {
+		EndgameTablebase endgameTablebase = new EndgameTablebase();
+		endgameTablebase.addTable(createMateInOneTable());
+		PlayoutAdjudicator playoutAdjudicator = new PlayoutAdjudicator();
+		playoutAdjudicator.setEndgameTablebase(endgameTablebase);
+		
+		Board board = createBoard("7k/Q7/6K1/8/8/8/8/8 w");
+		PlayoutAdjudicator.Adjudication adjudication = playoutAdjudicator.adjudicate(board, PlayoutAdjudicator.getMaterialBalance(board), 0);
+		assertEquals(PlayoutAdjudicator.Rule.Tablebase, adjudication.getRule());
+		assertEquals(Side.White, adjudication.getWinner());
+	}
+
+	private static EndgameTable createMateInOneTable() {
+		EndgameTable table = EndgameTable.create("KQvK");
+		table.setValue(table.getIndex(createBoard("7k/Q7/6K1/8/8/8/8/8 w"), false), (byte) 1);
+		table.setValue(table.getIndex(createBoard("7k/6Q1/6K1/8/8/8/8/8 b"), false), (byte) -1);
+		return table;
+	}
+
+	private static Board createBoard(String fen) {
+		Board board = new Board();
+		board.setFenString(fen);
+		return board;
+	}
+}
@@ -0,0 +1,73 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class FairWorkerPoolTest {
+
+	@Test
+	public void testInvokeAll() throws Exception {
+		FairWorkerPool pool = new FairWorkerPool(2);
+		ExecutorService session = pool.newSession();
+		
+		List<Callable<Integer>> tasks = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			int value = i;
+			tasks.add(() -> value * value);
+		}
+		List<Future<Integer>> results = session.invokeAll(tasks);
+		
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i * i, results.get(i).get().intValue());
+		}
+		
+		session.shutdown();
+		assertTrue(session.awaitTermination(1, TimeUnit.SECONDS));
+		pool.shutdown();
+	}
+
+	@Test
+	public void testFairness() throws Exception {
+		FairWorkerPool pool = new FairWorkerPool(1);
+		ExecutorService busySession = pool.newSession();
+		ExecutorService otherSession = pool.newSession();
+		
+		CountDownLatch blocked = new CountDownLatch(1);
+		CountDownLatch proceed = new CountDownLatch(1);
+		busySession.execute(() -> {
+			blocked.countDown();
+			try {
+				proceed.await();
+			} catch (InterruptedException e) {
+				// ignore
+			}
+		});
+		assertTrue(blocked.await(1, TimeUnit.SECONDS));
+		
+		// the busy session queues many tasks before the other session queues one
+		AtomicInteger busyTaskCount = new AtomicInteger();
+		for (int i = 0; i < 100; i++) {
+			busySession.execute(() -> busyTaskCount.incrementAndGet());
+		}
+		Future<Integer> otherResult = otherSession.submit(() -> busyTaskCount.get());
+		
+		proceed.countDown();
+		assertTrue(otherResult.get(1, TimeUnit.SECONDS) <= 1);
+		
+		busySession.shutdown();
+		otherSession.shutdown();
+		assertTrue(busySession.awaitTermination(1, TimeUnit.SECONDS));
+		assertEquals(100, busyTaskCount.get());
+		pool.shutdown();
+	}
+}
@@ -0,0 +1,65 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import ch.obermuhlner.genetic.chess.engine.PlayoutAdjudicator.Adjudication;
+import ch.obermuhlner.genetic.chess.engine.PlayoutAdjudicator.Rule;
+
+public class PlayoutAdjudicatorTest {
+
+	@Test
+	public void testMaterialMargin() {
+		PlayoutAdjudicator playoutAdjudicator = new PlayoutAdjudicator();
+		int minPlies = playoutAdjudicator.getMaterialMarginMinPlies();
+		
+		// already won at the root - the playout continues
+		Board board = createBoard("k7/8/8/8/8/8/8/3QR1K1 w");
+		double rootMaterialBalance = PlayoutAdjudicator.getMaterialBalance(board);
+		assertNull(playoutAdjudicator.adjudicate(board, rootMaterialBalance, 0));
+		assertNull(playoutAdjudicator.adjudicate(board, rootMaterialBalance, minPlies));
+		
+		// queen and rook lost during the playout
+		Board lostBoard = createBoard("k7/p7/8/8/8/8/8/6K1 w");
+		assertNull(playoutAdjudicator.adjudicate(lostBoard, rootMaterialBalance, minPlies - 1));
+		Adjudication adjudication = playoutAdjudicator.adjudicate(lostBoard, rootMaterialBalance, minPlies);
+		assertEquals(Rule.MaterialMargin, adjudication.getRule());
+		assertEquals(Side.Black, adjudication.getWinner());
+	}
+
+	@Test
+	public void testCounters() {
+		PlayoutAdjudicator playoutAdjudicator = new PlayoutAdjudicator();
+		playoutAdjudicator.countSavedPlies(Rule.MaterialMargin, 10);
+		playoutAdjudicator.countSavedPlies(Rule.MaterialMargin, 5);
+		playoutAdjudicator.countSavedPlies(Rule.Repetition, 3);
+		
+		assertEquals(2, playoutAdjudicator.getAdjudicatedCount(Rule.MaterialMargin));
+		assertEquals(15, playoutAdjudicator.getSavedPlies(Rule.MaterialMargin));
+		assertEquals(1, playoutAdjudicator.getAdjudicatedCount(Rule.Repetition));
+		assertEquals(0, playoutAdjudicator.getAdjudicatedCount(Rule.FiftyMoves));
+	}
+
+	@Test
+	public void testWinningRootPosition() {
+		MonteCarloChessEngine chessEngine = new MonteCarloChessEngine();
+		chessEngine.setInfoLogger(message -> {});
+		chessEngine.setFen("k7/8/8/8/8/8/8/3QR1K1 w");
+		
+		chessEngine.bestMove(500).getFuture().join();
+		
+		// playouts are played instead of being adjudicated at the root
+		PlayoutAdjudicator playoutAdjudicator = chessEngine.getPlayoutAdjudicator();
+		assertTrue(chessEngine.getPlayoutCount() > 0);
+		assertTrue(playoutAdjudicator.getAdjudicatedCount(Rule.MaterialMargin) < chessEngine.getPlayoutCount());
+		assertTrue(chessEngine.getNodeCount() > chessEngine.getPlayoutCount() * playoutAdjudicator.getMaterialMarginMinPlies());
+		chessEngine.shutdown();
+	}
+
+	private static Board createBoard(String fen) {
+		Board board = new Board();
+		board.setFenString(fen);
+		return board;
+	}
+}
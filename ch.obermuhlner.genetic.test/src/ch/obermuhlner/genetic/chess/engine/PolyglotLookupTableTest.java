@@ -0,0 +1,137 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import static org.junit.Assert.*;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PolyglotLookupTableTest {
+
+	private static final InfoLogger NO_LOGGER = message -> {};
+
+	@Test
+	public void testBestMove() throws IOException {
+		long[] randomKeys = createRandomKeys();
+		
+		Board startBoard = new Board();
+		startBoard.setStartPosition();
+		Board e4Board = startBoard.clone();
+		e4Board.move("e2e4");
+		Board otherBoard = startBoard.clone();
+		otherBoard.move("a2a3");
+		
+		PolyglotLookupTable keyTable = createEmptyLookupTable(randomKeys);
+		long startKey = keyTable.getKey(startBoard);
+		long e4Key = keyTable.getKey(e4Board);
+		
+		File bookFile = File.createTempFile("book", ".bin");
+		bookFile.deleteOnExit();
+		long[][] entries = {
+				{ startKey, toPolyglotMove(4, 1, 4, 3), 3 }, // e2e4
+				{ startKey, toPolyglotMove(3, 1, 3, 3), 1 }, // d2d4
+				{ startKey, toPolyglotMove(6, 0, 5, 2), 0 }, // g1f3 never played
+				{ e4Key, toPolyglotMove(2, 6, 2, 4), 1 }, // c7c5
+		};
+		writeBook(bookFile, entries);
+		
+		PolyglotLookupTable lookupTable = new PolyglotLookupTable(bookFile, randomKeys);
+		assertEquals(4, lookupTable.getEntryCount());
+		assertFalse(lookupTable.hasStandardRandomKeys());
+		
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < 1000; i++) {
+			counts.merge(lookupTable.bestMove(startBoard, NO_LOGGER), 1, Integer::sum);
+		}
+		assertEquals(2, counts.size());
+		assertEquals(750, counts.get("e2e4"), 60);
+		assertEquals(250, counts.get("d2d4"), 60);
+		
+		assertEquals("c7c5", lookupTable.bestMove(e4Board, NO_LOGGER));
+		assertNull(lookupTable.bestMove(otherBoard, NO_LOGGER));
+	}
+
+	@Test
+	public void testBestMoveSkipsIllegalEntries() throws IOException {
+		long[] randomKeys = createRandomKeys();
+		
+		Board board = new Board();
+		board.setFenString("4k3/8/8/8/8/8/8/4K2R w");
+		long key = createEmptyLookupTable(randomKeys).getKey(board);
+		
+		File bookFile = File.createTempFile("book", ".bin");
+		bookFile.deleteOnExit();
+		long[][] entries = {
+				{ key, toPolyglotMove(4, 0, 7, 0), 9 }, // e1h1 castling, not supported by the board
+				{ key, toPolyglotMove(4, 0, 3, 0), 1 }, // e1d1
+		};
+		writeBook(bookFile, entries);
+		
+		PolyglotLookupTable lookupTable = new PolyglotLookupTable(bookFile, randomKeys);
+		for (int i = 0; i < 100; i++) {
+			assertEquals("e1d1", lookupTable.bestMove(board, NO_LOGGER));
+		}
+	}
+
+	@Test
+	public void testStandardRandomKeys() throws IOException {
+		File emptyFile = File.createTempFile("book", ".bin");
+		emptyFile.deleteOnExit();
+		PolyglotLookupTable lookupTable = new PolyglotLookupTable(emptyFile);
+		assertTrue(lookupTable.hasStandardRandomKeys());
+		
+		// keys published with the Polyglot book format (positions with a possible en passant capture are skipped, the board does not support it)
+		Board board = new Board();
+		board.setStartPosition();
+		assertEquals(0x463b96181691fc9cL, lookupTable.getKey(board));
+		board.move("e2e4");
+		assertEquals(0x823c9b50fd114196L, lookupTable.getKey(board));
+		board.move("d7d5");
+		assertEquals(0x0756b94461c50fb0L, lookupTable.getKey(board));
+		board.move("e4e5");
+		assertEquals(0x662fafb965db29d4L, lookupTable.getKey(board));
+		board.move("f7f5");
+		board.move("e1e2");
+		assertEquals(0x652a607ca3f242c1L, lookupTable.getKey(board));
+		board.move("e8f7");
+		assertEquals(0x00fdd303c946bdd9L, lookupTable.getKey(board));
+	}
+
+	private PolyglotLookupTable createEmptyLookupTable(long[] randomKeys) throws IOException {
+		File emptyFile = File.createTempFile("book", ".bin");
+		emptyFile.deleteOnExit();
+		return new PolyglotLookupTable(emptyFile, randomKeys);
+	}
+
+	private static long[] createRandomKeys() {
+		Random random = new Random(1);
+		long[] randomKeys = new long[PolyglotLookupTable.RANDOM_KEY_COUNT];
+		for (int i = 0; i < randomKeys.length; i++) {
+			randomKeys[i] = random.nextLong();
+		}
+		return randomKeys;
+	}
+
+	private static long toPolyglotMove(int sourceX, int sourceY, int targetX, int targetY) {
+		return targetX | (targetY << 3) | (sourceX << 6) | (sourceY << 9);
+	}
+
+	private static void writeBook(File file, long[][] entries) throws IOException {
+		Arrays.sort(entries, (e1, e2) -> Long.compareUnsigned(e1[0], e2[0]));
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+			for (long[] entry : entries) {
+				out.writeLong(entry[0]);
+				out.writeShort((int) entry[1]);
+				out.writeShort((int) entry[2]);
+				out.writeInt(0);
+			}
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class PositionStatisticsStoreTest {
+
+	@Test
+	public void testAddAndFind() throws IOException {
+		File file = File.createTempFile("statistics", ".bin");
+		file.deleteOnExit();
+		
+		try (PositionStatisticsStore store = new PositionStatisticsStore(file, 4)) {
+			assertEquals(16, store.size());
+			assertEquals(-1, store.find(1234L, 77));
+			
+			store.add(1234L, 77, 10, 6, 3);
+			store.add(1234L, 78, 5, 1, 1);
+			store.add(1234L, 77, 10, 2, 5);
+			
+			int index = store.find(1234L, 77);
+			assertTrue(index >= 0);
+			assertEquals(20, store.getPlayCount(index));
+			assertEquals(8, store.getWhiteWins(index));
+			assertEquals(8, store.getBlackWins(index));
+			
+			assertEquals(5, store.getPlayCount(store.find(1234L, 78)));
+			assertEquals(-1, store.find(1235L, 77));
+		}
+	}
+
+	@Test
+	public void testPersistent() throws IOException {
+		File file = File.createTempFile("statistics", ".bin");
+		file.deleteOnExit();
+		
+		try (PositionStatisticsStore store = new PositionStatisticsStore(file, 10)) {
+			for (int i = 0; i < 100; i++) {
+				store.addAsync(i * 31L, i, i + 1, i, 0);
+			}
+		}
+
+		try (PositionStatisticsStore store = new PositionStatisticsStore(file, 10)) {
+			for (int i = 0; i < 100; i++) {
+				int index = store.find(i * 31L, i);
+				assertTrue(index >= 0);
+				assertEquals(i + 1, store.getPlayCount(index));
+				assertEquals(i, store.getWhiteWins(index));
+			}
+		}
+	}
+}
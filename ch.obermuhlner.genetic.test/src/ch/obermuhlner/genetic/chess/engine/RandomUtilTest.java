@@ -0,0 +1,69 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class RandomUtilTest {
+
+	@Test
+	public void testPickRandomIndexSmall() {
+		assertDistribution(new double[] { 1, 2, 3, 4 });
+	}
+
+	@Test
+	public void testPickRandomIndexLarge() {
+		double[] weights = new double[100];
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] = (i % 7) + 1;
+		}
+		assertDistribution(weights);
+	}
+
+	@Test
+	public void testPickRandomIndexNegativeWeights() {
+		double[] weights = { -2, 0, 2 };
+		Random random = new Random(1234);
+		int[] counts = new int[3];
+		for (int i = 0; i < 10000; i++) {
+			counts[RandomUtil.pickRandomIndex(random, weights, weights.length)]++;
+		}
+		assertEquals(0, counts[0]); // lowest weight is shifted to 0
+		assertTrue(counts[2] > counts[1]);
+	}
+
+	@Test
+	public void testPickRandomIndexZeroWeights() {
+		double[] weights = { 0, 0, 0 };
+		Random random = new Random(1234);
+		int[] counts = new int[3];
+		for (int i = 0; i < 3000; i++) {
+			counts[RandomUtil.pickRandomIndex(random, weights, weights.length)]++;
+		}
+		for (int count : counts) {
+			assertTrue(count > 800);
+		}
+	}
+
+	private void assertDistribution(double[] weights) {
+		double total = 0;
+		for (double weight : weights) {
+			total += weight;
+		}
+		
+		Random random = new Random(1234);
+		int n = 200000;
+		int[] counts = new int[weights.length];
+		for (int i = 0; i < n; i++) {
+			counts[RandomUtil.pickRandomIndex(random, weights, weights.length)]++;
+		}
+		
+		for (int i = 0; i < weights.length; i++) {
+			double expected = weights[i] / total;
+			double actual = (double) counts[i] / n;
+			assertEquals("index " + i, expected, actual, 0.01);
+		}
+	}
+}
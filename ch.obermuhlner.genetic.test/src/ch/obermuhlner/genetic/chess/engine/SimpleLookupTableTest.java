@@ -0,0 +1,76 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class SimpleLookupTableTest {
+
+	private static final InfoLogger NO_LOGGER = message -> {};
+
+	private static final String OPENINGS = String.join("\n",
+			"# comment",
+			"e2e4 100",
+			".    c7c5 80",
+			".    .    g1f3 70",
+			".    e7e5 20",
+			".    .    g1f3 60",
+			".    .    .    b8c6 50",
+			"d2d4 50");
+
+	@Test
+	public void testLoad() throws IOException {
+		File file = createOpeningsFile();
+		
+		SimpleLookupTable lookupTable = new SimpleLookupTable();
+		lookupTable.load(file);
+		
+		assertLookup(lookupTable);
+	}
+
+	@Test
+	public void testLoadCache() throws IOException {
+		File file = createOpeningsFile();
+		File cacheFile = File.createTempFile("openings", ".cache");
+		cacheFile.delete();
+		cacheFile.deleteOnExit();
+		
+		SimpleLookupTable lookupTable = new SimpleLookupTable();
+		lookupTable.load(file, cacheFile);
+		assertTrue(cacheFile.exists());
+		assertLookup(lookupTable);
+
+		SimpleLookupTable cachedLookupTable = new SimpleLookupTable();
+		cachedLookupTable.load(file, cacheFile);
+		assertLookup(cachedLookupTable);
+	}
+
+	private void assertLookup(SimpleLookupTable lookupTable) {
+		assertTrue(Arrays.asList("e2e4", "d2d4").contains(lookupTable.bestMove(createBoard(), NO_LOGGER)));
+		assertTrue(Arrays.asList("c7c5", "e7e5").contains(lookupTable.bestMove(createBoard("e2e4"), NO_LOGGER)));
+		assertEquals("g1f3", lookupTable.bestMove(createBoard("e2e4", "c7c5"), NO_LOGGER));
+		assertEquals("b8c6", lookupTable.bestMove(createBoard("e2e4", "e7e5", "g1f3"), NO_LOGGER));
+		assertNull(lookupTable.bestMove(createBoard("d2d4"), NO_LOGGER));
+	}
+
+	private File createOpeningsFile() throws IOException {
+		File file = File.createTempFile("openings", ".txt");
+		file.deleteOnExit();
+		Files.write(file.toPath(), OPENINGS.getBytes("US-ASCII"));
+		return file;
+	}
+
+	private Board createBoard(String... moves) {
+		Board board = new Board();
+		board.setStartPosition();
+		for (String move : moves) {
+			board.move(move);
+		}
+		return board;
+	}
+}
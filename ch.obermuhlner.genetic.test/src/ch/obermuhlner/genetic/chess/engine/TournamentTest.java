@@ -0,0 +1,108 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import ch.obermuhlner.genetic.chess.engine.Tournament.Opening;
+import ch.obermuhlner.genetic.chess.engine.Tournament.Player;
+import ch.obermuhlner.genetic.chess.engine.Tournament.Score;
+
+public class TournamentTest {
+
+	private static final double EPSILON = 0.01;
+
+	@Test
+	public void testElo() {
+		assertEquals(0, Tournament.toElo(0.5), EPSILON);
+		assertEquals(190.85, Tournament.toElo(0.75), EPSILON);
+		assertEquals(-190.85, Tournament.toElo(0.25), EPSILON);
+		assertEquals(0.75, Tournament.toScore(190.85), EPSILON);
+
+		Score score = new Score(30, 40, 30);
+		assertEquals(0.5, score.getScore(), EPSILON);
+		assertEquals(0, score.getEloDifference(), EPSILON);
+		assertTrue(score.getEloErrorMargin() > 0);
+
+		Score moreGamesScore = new Score(300, 400, 300);
+		assertTrue(moreGamesScore.getEloErrorMargin() < score.getEloErrorMargin());
+		
+		Score allWinsScore = new Score(10, 0, 0);
+		assertEquals(Tournament.toElo(0.95), allWinsScore.getEloDifference(), EPSILON);
+		assertTrue(Double.isFinite(allWinsScore.getEloErrorMargin()));
+		assertTrue(allWinsScore.getEloErrorMargin() > 0);
+		Score allLossesScore = new Score(0, 0, 10);
+		assertEquals(Tournament.toElo(0.05), allLossesScore.getEloDifference(), EPSILON);
+		assertTrue(Double.isFinite(allLossesScore.getEloErrorMargin()));
+		assertEquals(0, new Score(0, 0, 0).getEloDifference(), EPSILON);
+	}
+
+	@Test
+	public void testLogLikelihoodRatio() {
+		assertEquals(0, new Score(0, 0, 0).getLogLikelihoodRatio(0, 10), EPSILON);
+		assertEquals(0, new Score(0, 10, 0).getLogLikelihoodRatio(0, 10), EPSILON);
+
+		assertTrue(new Score(60, 20, 20).getLogLikelihoodRatio(0, 50) > Math.log(0.95 / 0.05));
+		assertTrue(new Score(20, 20, 60).getLogLikelihoodRatio(0, 50) < Math.log(0.05 / 0.95));
+
+		// halfway between elo0 and elo1 both hypotheses are equally likely
+		double halfwayScore = (Tournament.toScore(0) + Tournament.toScore(200)) / 2;
+		int wins = (int) Math.round(1000 * halfwayScore);
+		assertEquals(0, new Score(wins, 0, 1000 - wins).getLogLikelihoodRatio(0, 200), 0.5);
+	}
+
+	@Test
+	public void testLoadOpenings() throws Exception {
+		String openingsText = ""
+				+ "e2e4 100\n"
+				+ ".    c7c5 50\n"
+				+ ".    .    g1f3 40\n"
+				+ ".    e7e5 30\n"
+				+ "d2d4 80\n"
+				+ ".    g8f6 20\n"
+				+ "# comment\n"
+				+ "8/8/8/4k3/8/8/4P3/4K3 w\n";
+		List<Opening> openings = Tournament.loadOpenings(new StringReader(openingsText), 2);
+
+		assertEquals(4, openings.size());
+		assertEquals("startpos moves e2e4 c7c5", openings.get(0).toString());
+		assertEquals("startpos moves e2e4 e7e5", openings.get(1).toString());
+		assertEquals("startpos moves d2d4 g8f6", openings.get(2).toString());
+		assertEquals("8/8/8/4k3/8/8/4P3/4K3 w", openings.get(3).toString());
+
+		Board board = openings.get(0).createBoard();
+		assertEquals(Side.White, board.getSideToMove());
+		assertTrue(board.toFenString().startsWith("rnbqkbnr/pp1ppppp/8/2p5/4P3/8/PPPP1PPP/RNBQKBNR w"));
+	}
+
+	@Test
+	public void testRun() {
+		Player first = new Player("alphabeta", AlphaBetaChessEngine::new);
+		Player second = new Player("montecarlo", MonteCarloChessEngine::new);
+		List<Opening> openings = Arrays.asList(new Opening(null, Arrays.asList("e2e4", "e7e5")));
+
+		Tournament tournament = new Tournament(first, second, openings);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		tournament.setOutput(new PrintStream(output));
+		tournament.setSlots(2);
+		tournament.setMaxGames(4);
+		tournament.setMaxPlies(6);
+		tournament.setMoveTime(20);
+
+		Score score = tournament.run();
+
+		assertEquals(4, score.getGameCount());
+		assertNull(tournament.getDecision());
+		assertTrue(first.getNodesPerSecond() > 0);
+		assertEquals(0, first.getPlayoutsPerSecond());
+		assertTrue(second.getNodesPerSecond() > 0);
+		assertTrue(second.getPlayoutsPerSecond() > 0);
+		assertTrue(output.toString().contains("Game 4"));
+	}
+}
@@ -0,0 +1,97 @@
+package ch.obermuhlner.genetic.chess.engine.uci;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import ch.obermuhlner.genetic.chess.engine.uci.ProtocolLog.Level;
+
+public class ProtocolLogTest {
+
+	@Test
+	public void testLevel() {
+		StringWriter output = new StringWriter();
+		ProtocolLog log = new ProtocolLog(output, Level.Protocol, 100);
+		
+		log.log(Level.Protocol, "IN  uci");
+		log.log(Level.Info, "OUT info depth 1");
+		log.log(Level.Protocol, "OUT uciok");
+		log.log(new IllegalStateException("test"));
+		log.close();
+		
+		String[] lines = output.toString().split(System.lineSeparator());
+		assertEquals("IN  uci", lines[0]);
+		assertEquals("OUT uciok", lines[1]);
+		assertTrue(lines[2].startsWith("java.lang.IllegalStateException: test"));
+		assertEquals(0, log.getDroppedCount());
+	}
+
+	@Test
+	public void testOff() {
+		StringWriter output = new StringWriter();
+		ProtocolLog log = new ProtocolLog(output, Level.Off, 100);
+		
+		log.log(Level.Protocol, "IN  uci");
+		log.log(new IllegalStateException("test"));
+		log.close();
+		
+		assertEquals("", output.toString());
+	}
+
+	@Test
+	public void testDropWhenFull() throws InterruptedException {
+		CountDownLatch writing = new CountDownLatch(1);
+		CountDownLatch proceed = new CountDownLatch(1);
+		StringWriter output = new StringWriter() {
+			@Override
+			public void write(String str) {
+				writing.countDown();
+				try {
+					proceed.await();
+				} catch (InterruptedException e) {
+					// ignore
+				}
+				super.write(str);
+			}
+		};
+		ProtocolLog log = new ProtocolLog(output, Level.Info, 4);
+		
+		// the writer takes the first two lines and blocks while writing them
+		log.log(Level.Protocol, "line 0");
+		log.log(Level.Protocol, "line 1");
+		assertTrue(writing.await(1, TimeUnit.SECONDS));
+		
+		long startNanos = System.nanoTime();
+		for (int i = 2; i < 8; i++) {
+			log.log(Level.Protocol, "line " + i);
+		}
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+		assertTrue("took " + millis + " ms", millis < 100);
+		assertEquals(2, log.getDroppedCount());
+		
+		proceed.countDown();
+		log.close();
+		
+		String[] lines = output.toString().split(System.lineSeparator());
+		assertArrayEquals(new String[] { "line 0", "line 1", "line 2", "line 3", "line 4", "line 5", "DROPPED 2 lines" }, lines);
+	}
+	
+	@Test
+	public void testFlushWithoutClose() throws InterruptedException, IOException {
+		StringWriter output = new StringWriter();
+		ProtocolLog log = new ProtocolLog(output, Level.Info, 100);
+		
+		log.log(Level.Protocol, "IN  isready");
+		for (int i = 0; i < 50 && output.toString().isEmpty(); i++) {
+			Thread.sleep(20);
+		}
+		
+		assertEquals("IN  isready" + System.lineSeparator(), output.toString());
+		log.close();
+	}
+}
@@ -0,0 +1,227 @@
+package ch.obermuhlner.genetic.chess.engine.uci;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+import ch.obermuhlner.genetic.chess.engine.AbstractCalculationState;
+import ch.obermuhlner.genetic.chess.engine.AlphaBetaChessEngine;
+import ch.obermuhlner.genetic.chess.engine.CancellationToken;
+import ch.obermuhlner.genetic.chess.engine.ChessEngine;
+import ch.obermuhlner.genetic.chess.engine.MonteCarloChessEngine;
+import ch.obermuhlner.genetic.chess.engine.ChessEngine.CalculationState;
+import ch.obermuhlner.genetic.chess.engine.uci.ProtocolLog.Level;
+
+public class UciProtocolTest {
+
+	@Test
+	public void testUciOptions() {
+		List<String> lines = run(new MonteCarloChessEngine(), "uci");
+		
+		assertTrue(lines.contains("option name Threads type spin default 1 min 1 max 64"));
+		assertTrue(lines.contains("option name PlayoutLength type spin default 200 min 10 max 1000"));
+		assertTrue(lines.contains("option name OwnBook type check default true"));
+		assertTrue(lines.contains("option name TablebasePath type string default <empty>"));
+		assertFalse(lines.stream().anyMatch(line -> line.startsWith("option name Hash ")));
+		assertEquals("uciok", lines.get(lines.size() - 1));
+	}
+
+	@Test
+	public void testUciOptionsAlphaBeta() {
+		List<String> lines = run(new AlphaBetaChessEngine(), "uci");
+		
+		assertTrue(lines.contains("option name Hash type spin default 32 min 1 max 1024"));
+		assertFalse(lines.stream().anyMatch(line -> line.startsWith("option name Threads ")));
+		assertFalse(lines.stream().anyMatch(line -> line.startsWith("option name PlayoutLength ")));
+		assertEquals("uciok", lines.get(lines.size() - 1));
+	}
+
+	@Test
+	public void testSetOptionMonteCarlo() {
+		MonteCarloChessEngine chessEngine = new MonteCarloChessEngine();
+		
+		run(chessEngine,
+				"setoption name Threads value 4",
+				"setoption name PlayoutLength value 50",
+				"setoption name playoutlength value 5");
+		
+		assertEquals(4, chessEngine.getThreads());
+		assertEquals(10, chessEngine.getPlayoutLength());
+	}
+
+	@Test
+	public void testSetOptionHash() {
+		AlphaBetaChessEngine chessEngine = new AlphaBetaChessEngine();
+		
+		run(chessEngine, "setoption name Hash value 1");
+		
+		assertEquals(1 << 15, chessEngine.getTranspositionTableSize());
+	}
+
+	@Test
+	public void testSetOptionUnknown() {
+		List<String> lines = run(new MonteCarloChessEngine(), "setoption name Multi PV value 3");
+		
+		assertEquals(Arrays.asList("Unknown option: Multi PV"), lines);
+	}
+
+	@Test
+	public void testPositionIncremental() {
+		CountingChessEngine chessEngine = new CountingChessEngine();
+		
+		run(chessEngine,
+				"position startpos moves e2e4",
+				"position startpos moves e2e4 e7e5",
+				"position startpos moves e2e4 e7e5 g1f3 b8c6");
+		
+		assertEquals(1, chessEngine.setupCount);
+		assertEquals(4, chessEngine.moveCount);
+		assertTrue(chessEngine.getFen().startsWith("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w "));
+	}
+
+	@Test
+	public void testPositionChanged() {
+		CountingChessEngine chessEngine = new CountingChessEngine();
+		
+		run(chessEngine,
+				"position startpos moves e2e4 e7e5",
+				"position startpos moves d2d4",
+				"position fen 8/8/8/8/8/2k5/8/K7 w - - 0 1 moves a1b1",
+				"position fen 8/8/8/8/8/2k5/8/K7 w - - 0 1 moves a1b1 c3d3",
+				"ucinewgame",
+				"position fen 8/8/8/8/8/2k5/8/K7 w - - 0 1 moves a1b1 c3d3");
+		
+		assertEquals(4, chessEngine.setupCount);
+		assertEquals(7, chessEngine.moveCount);
+	}
+
+	@Test
+	public void testSpeculateLookupBeforeBestmove() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		SpeculatingChessEngine chessEngine = new SpeculatingChessEngine(output);
+		
+		List<String> lines = runUntilBestmove(output, chessEngine, "position startpos moves e2e4", "go movetime 50");
+		
+		assertTrue(lines.stream().anyMatch(line -> line.startsWith("bestmove ")));
+		// the speculation saw the position of the search and was started before bestmove was sent
+		assertTrue(chessEngine.speculatedFen.startsWith("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b "));
+		assertFalse(chessEngine.outputBeforeSpeculation.contains("bestmove"));
+	}
+
+	@Test
+	public void testBestmoveAfterFailedSearch() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		List<String> lines = runUntilBestmove(output, new FailingChessEngine(false), "position startpos moves e2e4", "go movetime 50");
+		assertTrue(lines.stream().anyMatch(line -> line.matches("bestmove [a-h][1-8][a-h][1-8]")));
+		
+		output = new ByteArrayOutputStream();
+		lines = runUntilBestmove(output, new FailingChessEngine(true), "position startpos moves e2e4", "go movetime 50");
+		assertTrue(lines.stream().anyMatch(line -> line.matches("bestmove [a-h][1-8][a-h][1-8]")));
+	}
+
+	@Test
+	public void testGoMovetimeZero() throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		List<String> lines = runUntilBestmove(output, new AlphaBetaChessEngine(), "position startpos", "go movetime 0");
+		
+		assertTrue(lines.stream().anyMatch(line -> line.matches("bestmove [a-h][1-8][a-h][1-8]")));
+	}
+
+	// the search throws, or the engine cannot start it at all
+	private static class FailingChessEngine extends MonteCarloChessEngine {
+		private final boolean rejected;
+		
+		FailingChessEngine(boolean rejected) {
+			this.rejected = rejected;
+		}
+		
+		@Override
+		public CalculationState<String> bestMove(long thinkingMilliseconds, CancellationToken cancellationToken) {
+			if (rejected) {
+				throw new RejectedExecutionException("executor has been shut down");
+			}
+			
+			AbstractCalculationState<String> calculationState = new AbstractCalculationState<String>(cancellationToken) {
+				@Override
+				protected String calculate() {
+					throw new IllegalStateException("playout failed");
+				}
+			};
+			new Thread(calculationState).start();
+			return calculationState;
+		}
+	}
+
+	private static class SpeculatingChessEngine extends MonteCarloChessEngine {
+		private final ByteArrayOutputStream output;
+		volatile String speculatedFen;
+		volatile String outputBeforeSpeculation;
+		
+		SpeculatingChessEngine(ByteArrayOutputStream output) {
+			this.output = output;
+		}
+		
+		@Override
+		public void speculateLookup(String move) {
+			outputBeforeSpeculation = new String(output.toByteArray(), StandardCharsets.UTF_8);
+			speculatedFen = getFen();
+			super.speculateLookup(move);
+		}
+	}
+
+	private static class CountingChessEngine extends MonteCarloChessEngine {
+		int setupCount;
+		int moveCount;
+		
+		@Override
+		public void setStartPosition() {
+			setupCount++;
+			super.setStartPosition();
+		}
+		
+		@Override
+		public void setFen(String fen) {
+			setupCount++;
+			super.setFen(fen);
+		}
+		
+		@Override
+		public void move(String move) {
+			moveCount++;
+			super.move(move);
+		}
+	}
+
+	// the search runs in the background, waits until it has printed its bestmove
+	private static List<String> runUntilBestmove(ByteArrayOutputStream output, ChessEngine chessEngine, String... commands) throws InterruptedException {
+		String input = String.join("\n", commands) + "\n";
+		UciProtocol uciProtocol = new UciProtocol(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), output, chessEngine, new ProtocolLog(new StringWriter(), Level.Off, 1));
+		uciProtocol.run();
+		
+		long deadlineMillis = System.currentTimeMillis() + 5000;
+		while (!new String(output.toByteArray(), StandardCharsets.UTF_8).contains("bestmove ") && System.currentTimeMillis() < deadlineMillis) {
+			Thread.sleep(10);
+		}
+		uciProtocol.close();
+		
+		return Arrays.asList(new String(output.toByteArray(), StandardCharsets.UTF_8).split("\\R"));
+	}
+
+	private static List<String> run(ChessEngine chessEngine, String... commands) {
+		String input = String.join("\n", commands) + "\n";
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		
+		UciProtocol uciProtocol = new UciProtocol(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), output, chessEngine, new ProtocolLog(new StringWriter(), Level.Off, 1));
+		uciProtocol.run();
+		
+		return Arrays.asList(new String(output.toByteArray(), StandardCharsets.UTF_8).split("\\R"));
+	}
+}
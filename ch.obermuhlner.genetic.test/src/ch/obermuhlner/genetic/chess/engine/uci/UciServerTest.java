@@ -0,0 +1,121 @@
+package ch.obermuhlner.genetic.chess.engine.uci;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import org.junit.Test;
+
+import ch.obermuhlner.genetic.chess.engine.FairWorkerPool;
+import ch.obermuhlner.genetic.chess.engine.MonteCarloChessEngine;
+import ch.obermuhlner.genetic.chess.engine.uci.ProtocolLog.Level;
+
+public class UciServerTest {
+
+	@Test
+	public void testSessions() throws Exception {
+		FairWorkerPool workerPool = new FairWorkerPool(2);
+		UciServer server = new UciServer(0, (inputStream, outputStream, log) -> {
+			MonteCarloChessEngine chessEngine = new MonteCarloChessEngine();
+			chessEngine.setSharedPlayoutExecutor(workerPool.newSession(), workerPool.getThreads());
+			return new UciProtocol(inputStream, outputStream, chessEngine, new ProtocolLog(new StringWriter(), Level.Off, 1));
+		}, "unused", Level.Off);
+		Thread serverThread = new Thread(server::run);
+		serverThread.setDaemon(true);
+		serverThread.start();
+		
+		try (Session session1 = new Session(server.getPort()); Session session2 = new Session(server.getPort())) {
+			session1.send("position startpos moves e2e4");
+			session2.send("position startpos moves d2d4");
+			session1.send("go movetime 300");
+			session2.send("go movetime 300");
+			
+			assertTrue(session1.readUntil("bestmove ").startsWith("bestmove "));
+			assertTrue(session2.readUntil("bestmove ").startsWith("bestmove "));
+			
+			session1.send("quit");
+			assertNull(session1.readUntil("never"));
+			
+			session2.send("isready");
+			assertEquals("readyok", session2.readUntil("readyok"));
+		}
+		
+		try (Session session3 = new Session(server.getPort())) {
+			session3.send("isready");
+			assertEquals("readyok", session3.readUntil("readyok"));
+		}
+		
+		server.close();
+		workerPool.shutdown();
+	}
+
+	@Test
+	public void testSessionsReleaseWorkerPool() throws Exception {
+		FairWorkerPool workerPool = new FairWorkerPool(2);
+		UciServer server = new UciServer(0, (inputStream, outputStream, log) -> {
+			MonteCarloChessEngine chessEngine = new MonteCarloChessEngine();
+			chessEngine.setSharedPlayoutExecutor(workerPool.newSession(), workerPool.getThreads());
+			return new UciProtocol(inputStream, outputStream, chessEngine, new ProtocolLog(new StringWriter(), Level.Off, 1));
+		}, "unused", Level.Off);
+		Thread serverThread = new Thread(server::run);
+		serverThread.setDaemon(true);
+		serverThread.start();
+		
+		for (int i = 0; i < 5; i++) {
+			try (Session session = new Session(server.getPort())) {
+				session.send("position startpos");
+				session.send("go movetime 50");
+				assertTrue(session.readUntil("bestmove ").startsWith("bestmove "));
+				session.send("quit");
+				assertNull(session.readUntil("never"));
+			}
+		}
+		
+		// the sessions are closed by the server threads after the connection ends
+		long deadlineMillis = System.currentTimeMillis() + 5000;
+		while ((server.getActiveSessionCount() > 0 || workerPool.getSessionCount() > 0) && System.currentTimeMillis() < deadlineMillis) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, workerPool.getSessionCount());
+		
+		server.close();
+		workerPool.shutdown();
+	}
+
+	private static class Session implements AutoCloseable {
+		private final Socket socket;
+		private final PrintWriter out;
+		private final BufferedReader in;
+		
+		Session(int port) throws IOException {
+			socket = new Socket(InetAddress.getLoopbackAddress(), port);
+			socket.setSoTimeout(5000);
+			out = new PrintWriter(socket.getOutputStream(), true);
+			in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+		}
+		
+		void send(String line) {
+			out.println(line);
+		}
+		
+		// returns the first line that starts with the prefix or null at the end of the session
+		String readUntil(String prefix) throws IOException {
+			String line = in.readLine();
+			while (line != null && !line.startsWith(prefix)) {
+				line = in.readLine();
+			}
+			return line;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			socket.close();
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package ch.obermuhlner.genetic;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ch.obermuhlner.genetic.GenerationStep")
+@Label("Generation Step")
+@Category("Genetic")
+@StackTrace(false)
+class GenerationStepEvent extends Event {
+
+	@Label("Step")
+	int step;
+
+	@Label("Population")
+	int population;
+
+	@Label("Evaluations")
+	int evaluations;
+
+	@Label("Best Value")
+	double bestValue;
+}
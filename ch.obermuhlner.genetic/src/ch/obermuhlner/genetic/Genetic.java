@@ -3,6 +3,12 @@ package ch.obermuhlner.genetic;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 public class Genetic<T> {
 
@@ -21,6 +27,10 @@ public class Genetic<T> {
 	private int stepCount = 100000;
 	private int printCount = 3;
 	
+	private ExecutorService executor;
+	private ThreadLocal<GenomeEvaluator<T>> threadEvaluators;
+	private final AtomicInteger threadEvaluatorCount = new AtomicInteger();
+	
 	public Genetic(GenomeFactory<T> factory, GenomeEvaluator<T> evaluator, GenomeMutator<T> mutator) {
 		this.factory = factory;
 		this.evaluator = evaluator;
@@ -47,6 +57,28 @@ public class Genetic<T> {
 		this.stepCount = stepCount;
 	}
 
+	public void setSeed(long seed) {
+		random.setSeed(seed);
+	}
+
+	// Evaluates the pairings of a step concurrently on the executor.
+	// Every thread of the executor gets its own evaluator from the factory, because evaluators keep state (chess engine, external process).
+	public void setExecutor(ExecutorService executor, Supplier<GenomeEvaluator<T>> evaluatorFactory) {
+		this.executor = executor;
+		threadEvaluators = ThreadLocal.withInitial(() -> {
+			threadEvaluatorCount.incrementAndGet();
+			return evaluatorFactory.get();
+		});
+	}
+
+	public List<T> getPopulation() {
+		List<T> genomes = new ArrayList<>();
+		for (EvaluatedGenome<T> evaluatedGenome : population) {
+			genomes.add(evaluatedGenome.genome);
+		}
+		return genomes;
+	}
+
 	public void run() {
 		while(population.size() < populationCount) {
 			addGenome(factory.createGenom());
@@ -67,11 +99,22 @@ public class Genetic<T> {
 	}
 
 	private void runStep(int step) {
+		GenerationStepEvent event = new GenerationStepEvent();
+		event.begin();
+		
 		evaluatePopulation();
 
 		sortPopulation();
 		printPopulation(printCount);
 		
+		if (event.shouldCommit()) {
+			event.step = step;
+			event.population = population.size();
+			event.evaluations = population.size() * evaluationCount;
+			event.bestValue = population.get(0).getAverageValue();
+			event.commit();
+		}
+		
 		cullPopulation();
 	}
 
@@ -86,25 +129,96 @@ public class Genetic<T> {
 	}
 	
 	private void evaluatePopulation() {
+		// the pairings are drawn up front, so that the random sequence does not depend on the threads
+		int pairCount = population.size() * evaluationCount;
+		int[] genomIndices1 = new int[pairCount];
+		int[] genomIndices2 = new int[pairCount];
+		int pairIndex = 0;
 		for (int genomIndex1 = 0; genomIndex1 < population.size(); genomIndex1++) {
 			for (int i = 0; i < evaluationCount; i++) {
 				int genomIndex2 = genomIndex1;
 				while (genomIndex2 == genomIndex1) {
 					genomIndex2 = random.nextInt(population.size());
 				}
-				
-				EvaluatedGenome<T> genom1 = population.get(genomIndex1);
-				EvaluatedGenome<T> genom2 = population.get(genomIndex2);
-				
-				double evaluation = evaluator.evaluate(genom1.genome, genom2.genome);
-				
-				genom1.value += evaluation;
-				genom1.count++;
-				
-				genom2.value -= evaluation;
-				genom2.count++;
+				genomIndices1[pairIndex] = genomIndex1;
+				genomIndices2[pairIndex] = genomIndex2;
+				pairIndex++;
+			}
+		}
+		
+		// every evaluation only writes its own slot of the buffers
+		double[] evaluations = new double[pairCount];
+		long[] evaluationNanos = new long[pairCount];
+		long startNanos = System.nanoTime();
+		
+		if (executor == null) {
+			for (int i = 0; i < pairCount; i++) {
+				evaluatePair(evaluator, genomIndices1[i], genomIndices2[i], evaluations, evaluationNanos, i);
 			}
+		} else {
+			List<Callable<Void>> evaluationTasks = new ArrayList<>();
+			for (int i = 0; i < pairCount; i++) {
+				int index = i;
+				evaluationTasks.add(() -> {
+					evaluatePair(threadEvaluators.get(), genomIndices1[index], genomIndices2[index], evaluations, evaluationNanos, index);
+					return null;
+				});
+			}
+			try {
+				for (Future<Void> evaluationFuture : executor.invokeAll(evaluationTasks)) {
+					evaluationFuture.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+		
+		long elapsedNanos = System.nanoTime() - startNanos;
+		
+		// the results are added in the order of the pairings, the same as when evaluating on a single thread
+		for (int i = 0; i < pairCount; i++) {
+			EvaluatedGenome<T> genom1 = population.get(genomIndices1[i]);
+			EvaluatedGenome<T> genom2 = population.get(genomIndices2[i]);
+			
+			genom1.value += evaluations[i];
+			genom1.count++;
+			
+			genom2.value -= evaluations[i];
+			genom2.count++;
+		}
+		
+		printSpeedup(pairCount, evaluationNanos, elapsedNanos);
+	}
+
+	private void evaluatePair(GenomeEvaluator<T> pairEvaluator, int genomIndex1, int genomIndex2, double[] evaluations, long[] evaluationNanos, int pairIndex) {
+		GenomeEvaluationEvent event = new GenomeEvaluationEvent();
+		event.begin();
+		long startNanos = System.nanoTime();
+		
+		double evaluation = pairEvaluator.evaluate(population.get(genomIndex1).genome, population.get(genomIndex2).genome);
+		
+		evaluationNanos[pairIndex] = System.nanoTime() - startNanos;
+		evaluations[pairIndex] = evaluation;
+		
+		if (event.shouldCommit()) {
+			event.evaluator = pairEvaluator.getClass().getSimpleName();
+			event.evaluation = evaluation;
+			event.commit();
+		}
+	}
+
+	// the speedup compares the summed time of the single evaluations with the elapsed time
+	private void printSpeedup(int pairCount, long[] evaluationNanos, long elapsedNanos) {
+		long totalEvaluationNanos = 0;
+		for (long nanos : evaluationNanos) {
+			totalEvaluationNanos += nanos;
 		}
+		int threads = executor == null ? 1 : threadEvaluatorCount.get();
+		double speedup = (double) totalEvaluationNanos / Math.max(1, elapsedNanos);
+		System.out.printf("# %d evaluations in %d ms on %d threads, speedup %.2f\n", pairCount, elapsedNanos / 1000000, threads, speedup);
 	}
 
 	private void sortPopulation() {
@@ -0,0 +1,20 @@
+package ch.obermuhlner.genetic;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ch.obermuhlner.genetic.GenomeEvaluation")
+@Label("Genome Evaluation")
+@Category("Genetic")
+@StackTrace(false)
+class GenomeEvaluationEvent extends Event {
+
+	@Label("Evaluator")
+	String evaluator;
+
+	@Label("Evaluation")
+	double evaluation;
+}
@@ -1,5 +1,8 @@
 package ch.obermuhlner.genetic.chess;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import ch.obermuhlner.genetic.Genetic;
 import ch.obermuhlner.genetic.GenomeEvaluator;
 import ch.obermuhlner.genetic.GenomeFactory;
@@ -202,9 +205,13 @@ public class StartPositionAnalyzer {
 		Genetic<StartPosition> genetic = new Genetic<StartPosition>(factory, evaluator, mutator);
 		//injectStartPositions(genetic, KNOWN_START_POSITIONS);
 
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		genetic.setExecutor(executor, () -> new MonteCarloChessEngineEvaluator(10, 50, true));
+
 		genetic.setPopulationCount(10);
 		genetic.setEvaluationCount(1);
 		genetic.run();
+		executor.shutdown();
 	}
 
 	private static void injectStartPositions(Genetic<StartPosition> genetic, StartPosition[] startPositions) {
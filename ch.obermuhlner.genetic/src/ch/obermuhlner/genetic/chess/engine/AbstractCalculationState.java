@@ -0,0 +1,109 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import ch.obermuhlner.genetic.chess.engine.ChessEngine.CalculationState;
+
+// Calculation running in the background - the future completes with the result as soon as the calculation finishes.
+public abstract class AbstractCalculationState<T> implements CalculationState<T>, Runnable {
+
+	private final CompletableFuture<T> future = new CompletableFuture<>();
+	private final List<Consumer<T>> progressListeners = new CopyOnWriteArrayList<>();
+
+	private final CancellationToken cancellationToken;
+
+	protected volatile long savedMilliseconds;
+
+	private volatile T lastProgress;
+
+	protected AbstractCalculationState(CancellationToken cancellationToken) {
+		this.cancellationToken = cancellationToken;
+	}
+
+	@Override
+	public boolean isFinished() {
+		return future.isDone();
+	}
+
+	@Override
+	public void stop() {
+		cancellationToken.cancel();
+	}
+
+	public boolean isStopped() {
+		return cancellationToken.isCancelled();
+	}
+
+	public CancellationToken getCancellationToken() {
+		return cancellationToken;
+	}
+
+	@Override
+	public T getResult() {
+		stop();
+		
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public long getSavedMilliseconds() {
+		return savedMilliseconds;
+	}
+
+	@Override
+	public CompletableFuture<T> getFuture() {
+		return future;
+	}
+
+	@Override
+	public void addProgressListener(Consumer<T> listener) {
+		progressListeners.add(listener);
+	}
+
+	@Override
+	public void run() {
+		T result;
+		try {
+			result = calculate();
+		} catch (RuntimeException e) {
+			// a failed calculation still answers with the best result so far (if there is one)
+			e.printStackTrace();
+			T fallbackResult = fallbackResult();
+			if (fallbackResult == null) {
+				future.completeExceptionally(e);
+			} else {
+				future.complete(fallbackResult);
+			}
+			return;
+		}
+		
+		future.complete(result);
+		report(result);
+	}
+
+	protected abstract T calculate();
+
+	// result if calculate() throws, by default the last progress
+	protected T fallbackResult() {
+		return lastProgress;
+	}
+
+	// called after the result has been delivered, for everything that is not needed to answer
+	protected void report(T result) {
+	}
+
+	protected void fireProgress(T intermediateResult) {
+		lastProgress = intermediateResult;
+		for (Consumer<T> listener : progressListeners) {
+			listener.accept(intermediateResult);
+		}
+	}
+}
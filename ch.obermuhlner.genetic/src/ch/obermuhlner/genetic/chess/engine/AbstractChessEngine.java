@@ -0,0 +1,140 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public abstract class AbstractChessEngine implements ChessEngine {
+
+	private final ExecutorService lookupExecutor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "lookup");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	protected LookupTable lookupTable = new LookupTable() {
+	};
+
+	protected InfoLogger infoLogger;
+
+	protected Board board;
+
+	@Override
+	public void setLookupTable(LookupTable lookupTable) {
+		this.lookupTable = lookupTable;
+	}
+	
+	@Override
+	public void setInfoLogger(InfoLogger infoLogger) {
+		this.infoLogger = infoLogger;
+	}
+	
+	@Override
+	public void setStartPosition() {
+		board = new Board(infoLogger);
+		board.setStartPosition();
+	}
+
+	@Override
+	public void setFen(String fen) {
+		board = new Board(infoLogger);
+		board.setFenString(fen);
+	}
+	
+	@Override
+	public String getFen() {
+		return board.toFenString();
+	}
+	
+	@Override
+	public String getPosition(int x, int y) {
+		Position position = board.getPosition(x, y);
+		if (position == null) {
+			return " ";
+		}
+		
+		return String.valueOf(position.getCharacter());
+	}
+
+	@Override
+	public boolean isWhiteToMove() {
+		return board.getSideToMove() == Side.White;
+	}
+	
+	@Override
+	public double evaluate() {
+		return board.getValue();
+	}
+
+	@Override
+	public void move(String move) {
+		board.move(move);
+	}
+
+	// prepares the lookup table for the replies of the opponent to the specified move
+	// (the board is copied on the calling thread, the lookups run in the background)
+	@Override
+	public void speculateLookup(String move) {
+		Board speculationBoard = board.clone();
+		if (!move.equals("(none)")) {
+			speculationBoard.move(move);
+		}
+		lookupExecutor.execute(() -> lookupTable.speculate(speculationBoard, infoLogger));
+	}
+
+	// runs the lookup table in the background so that the search can start right away
+	protected CompletableFuture<String> lookupBestMoveAsync() {
+		Board lookupBoard = board.clone();
+		return CompletableFuture.supplyAsync(() -> lookupTable.bestMove(lookupBoard, infoLogger), lookupExecutor);
+	}
+
+	// move of the lookup table if it has already arrived, otherwise null
+	protected static String getLookupMove(CompletableFuture<String> lookupFuture) {
+		if (!lookupFuture.isDone() || lookupFuture.isCompletedExceptionally()) {
+			return null;
+		}
+		return lookupFuture.join();
+	}
+
+	protected static String waitForLookupMove(CompletableFuture<String> lookupFuture) {
+		try {
+			return lookupFuture.get();
+		} catch (InterruptedException | ExecutionException e) {
+			return null;
+		}
+	}
+
+	// any legal move, used if the search failed before it found a move
+	protected String findAnyMove() {
+		List<Move> moves = board.clone().getAllMoves();
+		return moves.isEmpty() ? "(none)" : moves.get(0).toUciString();
+	}
+
+	public void printMoveScore(String move) {
+		Board localBoard = board.clone();
+		if (!move.equals("(none)")) {
+			localBoard.move(move);
+		}
+		int centipawnScore = (int) (localBoard.getValue() * 100);
+		infoLogger.info("score " + centipawnScore + " cp");
+	}
+
+	// source square, target square and conversion piece packed into an int (0 means no move)
+	protected static int toMoveCode(Move move) {
+		Position source = move.getSource();
+		int sourceIndex = source.getX() + source.getY() * 8;
+		int targetIndex = move.getTargetX() + move.getTargetY() * 8;
+		int convert = move.getConvert() == null ? 0 : move.getConvert().ordinal() + 1;
+		return sourceIndex | (targetIndex << 6) | (convert << 12);
+	}
+
+	protected static String toMoveString(Move move) {
+		if (move == null) {
+			return "(none)";
+		}
+	
+		return move.toUciString();
+	}
+}
@@ -0,0 +1,450 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class AlphaBetaChessEngine extends AbstractChessEngine {
+
+	private static final int MATE_SCORE = QuiescenceSearch.MATE_SCORE;
+	private static final int INFINITE_SCORE = MATE_SCORE + 1;
+	private static final int MAX_DEPTH = 64;
+	private static final int MAX_PLY = 128;
+
+	private static final int DEFAULT_TRANSPOSITION_TABLE_BITS = 20;
+
+	private static final int NULL_MOVE_REDUCTION = 2;
+	private static final int LATE_MOVE_REDUCTION_MIN_DEPTH = 3;
+	private static final int LATE_MOVE_REDUCTION_MIN_INDEX = 3;
+
+	private static final int LOOKUP_CHECK_NODES = 1023;
+
+	// move ordering: hash move, captures, promotions, killer moves, then quiet moves by history
+	private static final int HASH_MOVE_SCORE = 3000000;
+	private static final int CAPTURE_SCORE = 2000000;
+	private static final int PROMOTION_SCORE = 1900000;
+	private static final int FIRST_KILLER_SCORE = 1800000;
+	private static final int SECOND_KILLER_SCORE = 1700000;
+	private static final int MAX_HISTORY_SCORE = (SECOND_KILLER_SCORE - 1) / 10;
+
+	private static final long BUDGET_THINK_MILLISECONDS = TimeUnit.DAYS.toMillis(1);
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	private static final int TRANSPOSITION_ENTRY_BYTES = 18;
+
+	private TranspositionTable transpositionTable = new TranspositionTable(DEFAULT_TRANSPOSITION_TABLE_BITS);
+
+	private final LongAdder totalNodeCount = new LongAdder();
+
+	public AlphaBetaChessEngine() {
+	}
+
+	// largest transposition table (power of 2 entries) that fits into the specified memory
+	public void setHashSizeMegabytes(int megabytes) {
+		long entries = (long) megabytes * 1024 * 1024 / TRANSPOSITION_ENTRY_BYTES;
+		int sizeBits = 63 - Long.numberOfLeadingZeros(Math.max(1, entries));
+		if (sizeBits != Integer.numberOfTrailingZeros(transpositionTable.size())) {
+			transpositionTable = new TranspositionTable(sizeBits);
+		}
+	}
+
+	public int getTranspositionTableSize() {
+		return transpositionTable.size();
+	}
+
+	@Override
+	public long getNodeCount() {
+		return totalNodeCount.sum();
+	}
+
+	@Override
+	public long getPlayoutCount() {
+		return 0;
+	}
+
+	@Override
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Override
+	public CalculationState<String> bestMove(long thinkMilliseconds, CancellationToken cancellationToken) {
+		BestMoveCalculationState bestMoveCalculationState = new BestMoveCalculationState(thinkMilliseconds, cancellationToken, 0);
+		executor.execute(bestMoveCalculationState);
+
+		return bestMoveCalculationState;
+	}
+
+	// the node budget replaces the time limit, the transposition table is cleared so that the search can be repeated exactly
+	@Override
+	public String searchBudget(long nodeBudget, long seed) {
+		transpositionTable.clear();
+		BestMoveCalculationState bestMoveCalculationState = new BestMoveCalculationState(BUDGET_THINK_MILLISECONDS, new CancellationToken(), nodeBudget);
+		bestMoveCalculationState.run();
+
+		return bestMoveCalculationState.getFuture().join();
+	}
+
+	class BestMoveCalculationState extends AbstractCalculationState<String> {
+		private final long thinkMilliseconds;
+		private final long nodeBudget;
+
+		private final int[][] killerMoves = new int[MAX_PLY][2];
+		private final int[] historyScores = new int[64 * 64];
+		private CancellationToken searchCancellationToken;
+		private QuiescenceSearch quiescenceSearch;
+
+		private CompletableFuture<String> lookupFuture;
+		private long deadlineMillis;
+		private long nodeCount;
+		private boolean aborted;
+		private volatile boolean firstDepthSearched;
+		private Move rootBestMove;
+
+		// a node budget of 0 means no limit
+		public BestMoveCalculationState(long thinkMilliseconds, CancellationToken cancellationToken, long nodeBudget) {
+			super(cancellationToken);
+			this.thinkMilliseconds = thinkMilliseconds;
+			this.nodeBudget = nodeBudget;
+		}
+
+		@Override
+		protected String fallbackResult() {
+			String bestMove = super.fallbackResult();
+			return bestMove != null ? bestMove : findAnyMove();
+		}
+
+		@Override
+		protected String calculate() {
+			String result;
+			lookupFuture = nodeBudget > 0 ? CompletableFuture.completedFuture(null) : lookupBestMoveAsync();
+			
+			Move searchMove = searchIterativeDeepening(board.clone());
+			totalNodeCount.add(nodeCount + quiescenceSearch.getNodeCount());
+			
+			// the lookup is used if it arrived in time
+			String lookupMove = getLookupMove(lookupFuture);
+			if (lookupMove != null) {
+				infoLogger.info("string lookup recommends " + lookupMove);
+				result = lookupMove;
+			} else {
+				result = toMoveString(searchMove);
+			}
+
+			printMoveScore(result);
+
+			return result;
+		}
+
+		private Move searchIterativeDeepening(Board rootBoard) {
+			long startMillis = System.currentTimeMillis();
+			deadlineMillis = startMillis + thinkMilliseconds;
+			CancellationToken deadlineCancellationToken = CancellationToken.withDeadline(getCancellationToken(), deadlineMillis);
+			// depth 1 is always searched completely, so that even a search stopped right away answers with a move that has a real score
+			searchCancellationToken = new CancellationToken() {
+				@Override
+				public boolean isCancelled() {
+					return firstDepthSearched && deadlineCancellationToken.isCancelled();
+				}
+			};
+			quiescenceSearch = new QuiescenceSearch(searchCancellationToken);
+
+			Move bestMove = null;
+			for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+				rootBestMove = null;
+				int score = search(rootBoard, depth, -INFINITE_SCORE, INFINITE_SCORE, 0, false);
+				firstDepthSearched = true;
+				if (aborted) {
+					break;
+				}
+				if (rootBestMove == null) {
+					break;
+				}
+				bestMove = rootBestMove;
+
+				long elapsedMillis = Math.max(1, System.currentTimeMillis() - startMillis);
+				long totalNodeCount = nodeCount + quiescenceSearch.getNodeCount();
+				infoLogger.info("depth " + depth + " score cp " + score + " nodes " + totalNodeCount + " nps " + (totalNodeCount * 1000 / elapsedMillis) + " time " + elapsedMillis + " pv " + getPrincipalVariation(rootBoard, depth));
+				fireProgress(toMoveString(bestMove));
+
+				if (aborted || Math.abs(score) >= MATE_SCORE - MAX_PLY || System.currentTimeMillis() >= deadlineMillis) {
+					break;
+				}
+			}
+
+			return bestMove;
+		}
+
+		private int search(Board board, int depth, int alpha, int beta, int ply, boolean allowNullMove) {
+			if (isTimeUp()) {
+				return 0;
+			}
+
+			if (ply > 0 && (board.getRepetitionCount() > 0 || board.isFiftyMoveRule() || board.isInsufficientMaterial())) {
+				return 0;
+			}
+			if (depth <= 0 || ply >= MAX_PLY) {
+				return quiescenceSearch.search(board, alpha, beta, ply);
+			}
+			nodeCount++;
+
+			int originalAlpha = alpha;
+			long hash = board.getHash();
+			int hashMove = 0;
+			int hashIndex = transpositionTable.find(hash);
+			if (hashIndex >= 0) {
+				hashMove = transpositionTable.getMove(hashIndex);
+				if (ply > 0 && transpositionTable.getDepth(hashIndex) >= depth) {
+					int hashScore = fromTranspositionScore(transpositionTable.getScore(hashIndex), ply);
+					switch (transpositionTable.getBound(hashIndex)) {
+					case TranspositionTable.BOUND_EXACT:
+						return hashScore;
+					case TranspositionTable.BOUND_LOWER:
+						alpha = Math.max(alpha, hashScore);
+						break;
+					case TranspositionTable.BOUND_UPPER:
+						beta = Math.min(beta, hashScore);
+						break;
+					}
+					if (alpha >= beta) {
+						return hashScore;
+					}
+				}
+			}
+
+			List<Move> moves = board.getAllMoves();
+			boolean inCheck = board.isCheck();
+			if (moves.isEmpty()) {
+				return inCheck ? -MATE_SCORE + ply : 0;
+			}
+
+			if (allowNullMove && !inCheck && depth > NULL_MOVE_REDUCTION && hasNonPawnMaterial(board)) {
+				Board nullMoveBoard = board.clone();
+				nullMoveBoard.setSideToMove(board.getSideToMove().otherSide());
+				int score = -search(nullMoveBoard, depth - 1 - NULL_MOVE_REDUCTION, -beta, -beta + 1, ply + 1, false);
+				if (aborted) {
+					return 0;
+				}
+				if (score >= beta) {
+					return beta;
+				}
+			}
+
+			sortMoves(board, moves, hashMove, ply);
+
+			int bestScore = -INFINITE_SCORE;
+			int bestMoveCode = 0;
+			for (int i = 0; i < moves.size(); i++) {
+				Move move = moves.get(i);
+				if (move.getKill() != null && move.getKill().getPiece() == Piece.King) {
+					// the move generator is not strict about leaving the king in check
+					if (ply == 0) {
+						rootBestMove = move;
+					}
+					return MATE_SCORE - ply;
+				}
+
+				int moveCode = toMoveCode(move);
+				boolean quietMove = move.getKill() == null && move.getConvert() == null;
+
+				Board childBoard = board.clone();
+				childBoard.move(move);
+
+				int score;
+				if (i >= LATE_MOVE_REDUCTION_MIN_INDEX && depth >= LATE_MOVE_REDUCTION_MIN_DEPTH && quietMove && !inCheck && !isKillerMove(moveCode, ply)) {
+					score = -search(childBoard, depth - 2, -alpha - 1, -alpha, ply + 1, true);
+					if (score > alpha) {
+						score = -search(childBoard, depth - 1, -beta, -alpha, ply + 1, true);
+					}
+				} else {
+					score = -search(childBoard, depth - 1, -beta, -alpha, ply + 1, true);
+				}
+				if (aborted) {
+					return 0;
+				}
+
+				if (score > bestScore) {
+					bestScore = score;
+					bestMoveCode = moveCode;
+					if (ply == 0) {
+						rootBestMove = move;
+					}
+				}
+				if (score > alpha) {
+					alpha = score;
+				}
+				if (alpha >= beta) {
+					if (quietMove) {
+						addKillerMove(moveCode, ply);
+						addHistoryScore(moveCode, depth);
+					}
+					break;
+				}
+			}
+
+			int bound;
+			if (bestScore <= originalAlpha) {
+				bound = TranspositionTable.BOUND_UPPER;
+			} else if (bestScore >= beta) {
+				bound = TranspositionTable.BOUND_LOWER;
+			} else {
+				bound = TranspositionTable.BOUND_EXACT;
+			}
+			transpositionTable.store(hash, depth, toTranspositionScore(bestScore, ply), bound, bestMoveCode);
+
+			return bestScore;
+		}
+
+		private boolean isTimeUp() {
+			if (!firstDepthSearched) {
+				return false;
+			}
+			// cancellation and deadline are checked at every node (also in the quiescence search), the node budget in the main search, the lookup only every few nodes
+			if (searchCancellationToken.isCancelled() || nodeBudget > 0 && nodeCount >= nodeBudget || (nodeCount & LOOKUP_CHECK_NODES) == 0 && getLookupMove(lookupFuture) != null) {
+				aborted = true;
+			}
+			return aborted;
+		}
+
+		void sortMoves(Board board, List<Move> moves, int hashMove, int ply) {
+			int[] moveScores = new int[moves.size()];
+			for (int i = 0; i < moveScores.length; i++) {
+				moveScores[i] = scoreMove(board, moves.get(i), hashMove, ply);
+			}
+
+			// insertion sort - move lists are short
+			for (int i = 1; i < moveScores.length; i++) {
+				int moveScore = moveScores[i];
+				Move move = moves.get(i);
+				int j = i - 1;
+				while (j >= 0 && moveScores[j] < moveScore) {
+					moveScores[j + 1] = moveScores[j];
+					moves.set(j + 1, moves.get(j));
+					j--;
+				}
+				moveScores[j + 1] = moveScore;
+				moves.set(j + 1, move);
+			}
+		}
+
+		private int scoreMove(Board board, Move move, int hashMove, int ply) {
+			int moveCode = toMoveCode(move);
+			if (moveCode == hashMove) {
+				return HASH_MOVE_SCORE;
+			}
+			if (move.getKill() != null) {
+				// most valuable victim, least valuable attacker
+				return CAPTURE_SCORE + (int) (move.getKill().getPiece().getValue() * 100) * 10 - (int) (move.getSource().getPiece().getValue() * 10);
+			}
+			if (move.getConvert() != null) {
+				return PROMOTION_SCORE + (int) (move.getConvert().getValue() * 100);
+			}
+			if (killerMoves[ply][0] == moveCode) {
+				return FIRST_KILLER_SCORE;
+			}
+			if (killerMoves[ply][1] == moveCode) {
+				return SECOND_KILLER_SCORE;
+			}
+			// quiet moves always stay below the killer moves
+			int score = historyScores[moveCode & 0xfff] * 10 + (int) (board.getValue(move) * 10);
+			return Math.min(score, SECOND_KILLER_SCORE - 1);
+		}
+
+		// saturates so that a long search cannot overflow the history
+		void addHistoryScore(int moveCode, int depth) {
+			int index = moveCode & 0xfff;
+			historyScores[index] = Math.min(historyScores[index] + depth * depth, MAX_HISTORY_SCORE);
+		}
+
+		private boolean isKillerMove(int moveCode, int ply) {
+			return killerMoves[ply][0] == moveCode || killerMoves[ply][1] == moveCode;
+		}
+
+		void addKillerMove(int moveCode, int ply) {
+			if (killerMoves[ply][0] != moveCode) {
+				killerMoves[ply][1] = killerMoves[ply][0];
+				killerMoves[ply][0] = moveCode;
+			}
+		}
+
+		private String getPrincipalVariation(Board rootBoard, int depth) {
+			StringBuilder result = new StringBuilder();
+
+			Board pvBoard = rootBoard.clone();
+			for (int i = 0; i < depth; i++) {
+				int hashIndex = transpositionTable.find(pvBoard.getHash());
+				if (hashIndex < 0) {
+					break;
+				}
+				Move move = findMove(pvBoard, transpositionTable.getMove(hashIndex));
+				if (move == null) {
+					break;
+				}
+
+				if (result.length() > 0) {
+					result.append(" ");
+				}
+				result.append(move.toUciString());
+				pvBoard.move(move);
+			}
+
+			return result.toString();
+		}
+	}
+
+	private static boolean hasNonPawnMaterial(Board board) {
+		for (Position position : board.getPositions()) {
+			if (position.getSide() == board.getSideToMove() && position.getPiece() != Piece.Pawn && position.getPiece() != Piece.King) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// mate scores are stored relative to the position, not to the root
+	private static int toTranspositionScore(int score, int ply) {
+		if (score >= MATE_SCORE - MAX_PLY) {
+			return score + ply;
+		}
+		if (score <= -MATE_SCORE + MAX_PLY) {
+			return score - ply;
+		}
+		return score;
+	}
+
+	private static int fromTranspositionScore(int score, int ply) {
+		if (score >= MATE_SCORE - MAX_PLY) {
+			return score - ply;
+		}
+		if (score <= -MATE_SCORE + MAX_PLY) {
+			return score + ply;
+		}
+		return score;
+	}
+
+	private static Move findMove(Board board, int moveCode) {
+		if (moveCode == 0) {
+			return null;
+		}
+		for (Move move : board.getAllMoves()) {
+			if (toMoveCode(move) == moveCode) {
+				return move;
+			}
+		}
+		return null;
+	}
+
+	public static void main(String[] args) {
+		AlphaBetaChessEngine chessEngine = new AlphaBetaChessEngine();
+		chessEngine.setInfoLogger(message -> System.out.println(message));
+		chessEngine.setStartPosition();
+
+		CalculationState<String> calculationState = chessEngine.bestMove(5000);
+		System.out.println("BEST " + calculationState.getFuture().join());
+		chessEngine.shutdown();
+	}
+}
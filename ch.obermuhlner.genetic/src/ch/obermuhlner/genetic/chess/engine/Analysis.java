@@ -10,6 +10,7 @@ import java.util.Optional;
 
 public class Analysis {
 	private final Position[] positionBoard = new Position[64];
+	private final double[] positionValues = new double[64];
 	
 	private final Map<Position, List<Move>> positionMovesMap = new HashMap<>();
 	private final Map<Position, List<Position>> positionAttacksMap = new HashMap<>();
@@ -24,6 +25,7 @@ public class Analysis {
 	private boolean kingInCheck;
 
 	public Analysis(Board board) {
+		Arrays.fill(positionValues, Double.NaN);
 		for (Position position : board.getPositions()) {
 			positionBoard[position.getX() + position.getY() * 8] = position;
 		}
@@ -73,6 +75,20 @@ public class Analysis {
 	}
 
 	public double getValue(Position position) {
+		int index = position.getX() + position.getY() * 8;
+		if (positionBoard[index] != position) {
+			return calculatePositionValue(position);
+		}
+		
+		double value = positionValues[index];
+		if (Double.isNaN(value)) {
+			value = calculatePositionValue(position);
+			positionValues[index] = value;
+		}
+		return value;
+	}
+
+	private double calculatePositionValue(Position position) {
 		double value = position.getPiece().getValue(position.getSide(), position.getX(), position.getY());
 		
 		switch(position.getPiece()) {
@@ -435,4 +451,4 @@ public class Analysis {
 
 		return move;
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,134 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Wraps a slow (remote) lookup table: results are cached per position (also positions without a move),
+// a call waits at most the deadline for the result and outdated cache entries are refreshed in the background.
+// Failed lookups (the lookup table throws) are only remembered for a short time and then retried.
+public class AsyncLookupTable implements LookupTable {
+
+	public static final long DEFAULT_FAILURE_RETRY_MILLIS = 10 * 1000;
+
+	private final LookupTable lookupTable;
+	private final long deadlineMillis;
+	private final long refreshMillis;
+	private volatile long failureRetryMillis = DEFAULT_FAILURE_RETRY_MILLIS;
+
+	private final Map<Long, CacheEntry> cache;
+	private final Map<Long, CompletableFuture<String>> pendingLookups = new ConcurrentHashMap<>();
+
+	private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "async-lookup");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private static class CacheEntry {
+		final String move;
+		final long createdMillis;
+		final boolean failed;
+		
+		CacheEntry(String move, long createdMillis, boolean failed) {
+			this.move = move;
+			this.createdMillis = createdMillis;
+			this.failed = failed;
+		}
+	}
+
+	public AsyncLookupTable(LookupTable lookupTable, long deadlineMillis, int cacheSize, long refreshMillis) {
+		this.lookupTable = lookupTable;
+		this.deadlineMillis = deadlineMillis;
+		this.refreshMillis = refreshMillis;
+		
+		cache = new LinkedHashMap<Long, CacheEntry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, CacheEntry> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	public void setFailureRetryMillis(long failureRetryMillis) {
+		this.failureRetryMillis = failureRetryMillis;
+	}
+
+	@Override
+	public String bestMove(Board board, InfoLogger infoLogger) {
+		long hash = board.getHash();
+		
+		CacheEntry cacheEntry;
+		synchronized (cache) {
+			cacheEntry = cache.get(hash);
+			if (cacheEntry != null && cacheEntry.failed && System.currentTimeMillis() - cacheEntry.createdMillis > failureRetryMillis) {
+				cache.remove(hash);
+				cacheEntry = null;
+			}
+		}
+		if (cacheEntry != null && cacheEntry.failed) {
+			return null;
+		}
+		if (cacheEntry != null) {
+			if (System.currentTimeMillis() - cacheEntry.createdMillis > refreshMillis) {
+				startLookup(hash, board, infoLogger);
+			}
+			return cacheEntry.move;
+		}
+		
+		CompletableFuture<String> lookup = startLookup(hash, board, infoLogger);
+		try {
+			return lookup.get(deadlineMillis, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			infoLogger.info("string lookup did not answer within " + deadlineMillis + " ms");
+		} catch (InterruptedException | ExecutionException e) {
+			// ignore
+		}
+		return null;
+	}
+
+	public int getCacheSize() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	private CompletableFuture<String> startLookup(long hash, Board board, InfoLogger infoLogger) {
+		CompletableFuture<String> lookup = new CompletableFuture<>();
+		CompletableFuture<String> pendingLookup = pendingLookups.putIfAbsent(hash, lookup);
+		if (pendingLookup != null) {
+			return pendingLookup;
+		}
+		
+		Board lookupBoard = board.clone();
+		executor.execute(() -> {
+			try {
+				String move = lookupTable.bestMove(lookupBoard, infoLogger);
+				synchronized (cache) {
+					cache.put(hash, new CacheEntry(move, System.currentTimeMillis(), false));
+				}
+				pendingLookups.remove(hash);
+				lookup.complete(move);
+			} catch (RuntimeException e) {
+				// a previous answer is kept, otherwise the failure blocks new requests until the retry time has passed
+				synchronized (cache) {
+					CacheEntry cacheEntry = cache.get(hash);
+					if (cacheEntry == null || cacheEntry.failed) {
+						cache.put(hash, new CacheEntry(null, System.currentTimeMillis(), true));
+					}
+				}
+				pendingLookups.remove(hash);
+				lookup.completeExceptionally(e);
+			}
+		});
+		return lookup;
+	}
+}
@@ -0,0 +1,513 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import java.util.Random;
+
+// Plays a batch of independent random games in lockstep - every step advances all running games by one ply.
+// The state of all games is kept in parallel primitive arrays (one bitboard array per piece type, side to move, ply counters),
+// moves are generated directly on the bitboards with the same rules as Board (no castling, no en passant).
+// The playout policy uses the static move value of Move.getValue() instead of the Analysis based value.
+public class BatchPlayout {
+
+	private static final int RUNNING = 0;
+	private static final int WHITE_WINS = 1;
+	private static final int BLACK_WINS = 2;
+	private static final int DRAW = 3;
+
+	private static final int WHITE = 0;
+	private static final int BLACK = 1;
+
+	private static final int PAWN = 0;
+	private static final int KNIGHT = 1;
+	private static final int BISHOP = 2;
+	private static final int ROOK = 3;
+	private static final int QUEEN = 4;
+	private static final int KING = 5;
+
+	private static final int[] PROMOTION_PIECES = { QUEEN, ROOK, BISHOP, KNIGHT };
+
+	private static final int MAX_MOVES = 256;
+	private static final double KILL_VALUE_FACTOR = 5;
+	private static final double CONVERT_VALUE_FACTOR = 5;
+
+	private static final int[][] BISHOP_DIRECTIONS = { { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } };
+	private static final int[][] ROOK_DIRECTIONS = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } };
+
+	private static final long[] KNIGHT_ATTACKS = new long[64];
+	private static final long[] KING_ATTACKS = new long[64];
+	private static final long[][] PAWN_ATTACKS = new long[2][64];
+	private static final double[][] PIECE_SQUARE_VALUES = new double[12][64];
+	private static final double[] MATERIAL_VALUES = new double[6];
+
+	private static final long DARK_SQUARES;
+
+	static {
+		long darkSquares = 0;
+		for (int y = 0; y < 8; y++) {
+			for (int x = 0; x < 8; x++) {
+				int square = x + y * 8;
+				if ((x + y) % 2 == 0) {
+					darkSquares |= 1L << square;
+				}
+
+				KNIGHT_ATTACKS[square] = toBits(x, y, new int[][] { { -2, 1 }, { -1, 2 }, { 1, 2 }, { 2, 1 }, { 2, -1 }, { 1, -2 }, { -1, -2 }, { -2, -1 } });
+				KING_ATTACKS[square] = toBits(x, y, new int[][] { { -1, -1 }, { -1, 0 }, { -1, 1 }, { 0, -1 }, { 0, 1 }, { 1, -1 }, { 1, 0 }, { 1, 1 } });
+				PAWN_ATTACKS[WHITE][square] = toBits(x, y, new int[][] { { -1, 1 }, { 1, 1 } });
+				PAWN_ATTACKS[BLACK][square] = toBits(x, y, new int[][] { { -1, -1 }, { 1, -1 } });
+
+				for (Side side : Side.values()) {
+					for (Piece piece : Piece.values()) {
+						PIECE_SQUARE_VALUES[side.ordinal() * 6 + piece.ordinal()][square] = piece.getValue(side, x, y);
+					}
+				}
+			}
+		}
+		DARK_SQUARES = darkSquares;
+
+		for (Piece piece : Piece.values()) {
+			MATERIAL_VALUES[piece.ordinal()] = piece == Piece.King ? 0 : piece.getValue();
+		}
+	}
+
+	private final int batchSize;
+
+	private final long[][] bitboards = new long[12][];
+	private final long[][] sidePieces = new long[2][];
+	private final int[] sideToMove;
+	private final int[] halfMoveClock;
+	private final int[] plies;
+	private final int[] results;
+	private final double[] materialBalance;
+	private double rootMaterialBalance;
+
+	private final int[] moveBuffer = new int[MAX_MOVES];
+	private final double[] weightBuffer = new double[MAX_MOVES];
+
+	private int runningCount;
+	private long simulatedPlies;
+
+	public BatchPlayout(int batchSize) {
+		this.batchSize = batchSize;
+
+		for (int i = 0; i < bitboards.length; i++) {
+			bitboards[i] = new long[batchSize];
+		}
+		sidePieces[WHITE] = new long[batchSize];
+		sidePieces[BLACK] = new long[batchSize];
+		sideToMove = new int[batchSize];
+		halfMoveClock = new int[batchSize];
+		plies = new int[batchSize];
+		results = new int[batchSize];
+		materialBalance = new double[batchSize];
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setup(Board board) {
+		long[] setupBitboards = new long[12];
+		double setupMaterialBalance = 0;
+		for (Position position : board.getPositions()) {
+			int side = position.getSide().ordinal();
+			int piece = position.getPiece().ordinal();
+			setupBitboards[side * 6 + piece] |= 1L << (position.getX() + position.getY() * 8);
+			setupMaterialBalance += side == WHITE ? MATERIAL_VALUES[piece] : -MATERIAL_VALUES[piece];
+		}
+
+		for (int game = 0; game < batchSize; game++) {
+			sidePieces[WHITE][game] = 0;
+			sidePieces[BLACK][game] = 0;
+			for (int i = 0; i < 12; i++) {
+				bitboards[i][game] = setupBitboards[i];
+				sidePieces[i / 6][game] |= setupBitboards[i];
+			}
+			sideToMove[game] = board.getSideToMove().ordinal();
+			halfMoveClock[game] = board.getFiftyMoveNumber();
+			plies[game] = 0;
+			results[game] = RUNNING;
+			materialBalance[game] = setupMaterialBalance;
+		}
+		rootMaterialBalance = setupMaterialBalance;
+		runningCount = batchSize;
+		simulatedPlies = 0;
+	}
+
+	public void play(Random random, int moveCount, PlayoutAdjudicator playoutAdjudicator) {
+		double materialMargin = playoutAdjudicator.getMaterialMargin();
+		int materialMarginMinPlies = playoutAdjudicator.getMaterialMarginMinPlies();
+
+		for (int step = 0; step < moveCount && runningCount > 0; step++) {
+			int remainingPlies = moveCount - step;
+			for (int game = 0; game < batchSize; game++) {
+				if (results[game] != RUNNING) {
+					continue;
+				}
+
+				if (isInsufficientMaterial(game)) {
+					playoutAdjudicator.countSavedPlies(PlayoutAdjudicator.Rule.InsufficientMaterial, remainingPlies);
+					finish(game, DRAW);
+					continue;
+				}
+				if (halfMoveClock[game] >= 100) {
+					playoutAdjudicator.countSavedPlies(PlayoutAdjudicator.Rule.FiftyMoves, remainingPlies);
+					finish(game, DRAW);
+					continue;
+				}
+				// like PlayoutAdjudicator relative to the balance at the start of the playout
+				double materialGain = materialBalance[game] - rootMaterialBalance;
+				if (materialMargin > 0 && step >= materialMarginMinPlies && Math.abs(materialGain) >= materialMargin) {
+					playoutAdjudicator.countSavedPlies(PlayoutAdjudicator.Rule.MaterialMargin, remainingPlies);
+					finish(game, materialGain > 0 ? WHITE_WINS : BLACK_WINS);
+					continue;
+				}
+
+				int legalMoveCount = generateLegalMoves(game);
+				if (legalMoveCount == 0) {
+					int side = sideToMove[game];
+					if (isAttacked(game, getKingSquare(game, side), 1 - side)) {
+						finish(game, side == WHITE ? BLACK_WINS : WHITE_WINS);
+					} else {
+						finish(game, DRAW);
+					}
+					continue;
+				}
+
+				int index = RandomUtil.pickRandomIndex(random, weightBuffer, legalMoveCount);
+				makeMove(game, moveBuffer[index]);
+			}
+		}
+
+		for (int game = 0; game < batchSize; game++) {
+			if (results[game] == RUNNING) {
+				double value = evaluate(game);
+				finish(game, value > 0 ? WHITE_WINS : value < 0 ? BLACK_WINS : DRAW);
+			}
+		}
+	}
+
+	public Side getWinner(int game) {
+		switch (results[game]) {
+		case WHITE_WINS:
+			return Side.White;
+		case BLACK_WINS:
+			return Side.Black;
+		default:
+			return null;
+		}
+	}
+
+	public int getWhiteWinCount() {
+		return countResults(WHITE_WINS);
+	}
+
+	public int getBlackWinCount() {
+		return countResults(BLACK_WINS);
+	}
+
+	public long getSimulatedPlies() {
+		return simulatedPlies;
+	}
+
+	private int countResults(int result) {
+		int count = 0;
+		for (int game = 0; game < batchSize; game++) {
+			if (results[game] == result) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private void finish(int game, int result) {
+		results[game] = result;
+		runningCount--;
+	}
+
+	private int generateLegalMoves(int game) {
+		int side = sideToMove[game];
+		long own = sidePieces[side][game];
+		long occupied = own | sidePieces[1 - side][game];
+
+		int count = 0;
+		for (int piece = PAWN; piece <= KING; piece++) {
+			long pieces = bitboards[side * 6 + piece][game];
+			while (pieces != 0) {
+				int from = Long.numberOfTrailingZeros(pieces);
+				pieces &= pieces - 1;
+
+				if (piece == PAWN) {
+					count = addPawnMoves(game, side, from, occupied, count);
+					continue;
+				}
+
+				long targets;
+				switch (piece) {
+				case KNIGHT:
+					targets = KNIGHT_ATTACKS[from];
+					break;
+				case BISHOP:
+					targets = slidingAttacks(from, occupied, BISHOP_DIRECTIONS);
+					break;
+				case ROOK:
+					targets = slidingAttacks(from, occupied, ROOK_DIRECTIONS);
+					break;
+				case QUEEN:
+					targets = slidingAttacks(from, occupied, BISHOP_DIRECTIONS) | slidingAttacks(from, occupied, ROOK_DIRECTIONS);
+					break;
+				default:
+					targets = KING_ATTACKS[from];
+					break;
+				}
+				targets &= ~own;
+
+				while (targets != 0) {
+					int to = Long.numberOfTrailingZeros(targets);
+					targets &= targets - 1;
+					count = addMoveIfLegal(game, side, piece, from, to, -1, count);
+				}
+			}
+		}
+		return count;
+	}
+
+	private int addPawnMoves(int game, int side, int from, long occupied, int count) {
+		int direction = side == WHITE ? 8 : -8;
+		int startRow = side == WHITE ? 1 : 6;
+		int lastRow = side == WHITE ? 7 : 0;
+
+		int to = from + direction;
+		if (to >= 0 && to < 64 && (occupied & (1L << to)) == 0) {
+			count = addPawnMove(game, side, from, to, lastRow, count);
+			int doubleTo = to + direction;
+			if ((from >>> 3) == startRow && (occupied & (1L << doubleTo)) == 0) {
+				count = addMoveIfLegal(game, side, PAWN, from, doubleTo, -1, count);
+			}
+		}
+
+		long captures = PAWN_ATTACKS[side][from] & sidePieces[1 - side][game];
+		while (captures != 0) {
+			int captureTo = Long.numberOfTrailingZeros(captures);
+			captures &= captures - 1;
+			count = addPawnMove(game, side, from, captureTo, lastRow, count);
+		}
+		return count;
+	}
+
+	private int addPawnMove(int game, int side, int from, int to, int lastRow, int count) {
+		if ((to >>> 3) == lastRow) {
+			for (int promotion : PROMOTION_PIECES) {
+				count = addMoveIfLegal(game, side, PAWN, from, to, promotion, count);
+			}
+			return count;
+		}
+		return addMoveIfLegal(game, side, PAWN, from, to, -1, count);
+	}
+
+	private int addMoveIfLegal(int game, int side, int piece, int from, int to, int promotion, int count) {
+		int captured = findPiece(game, 1 - side, to);
+		int move = encodeMove(piece, from, to, captured, promotion);
+
+		togglePieces(game, side, move);
+		boolean legal = !isAttacked(game, getKingSquare(game, side), 1 - side);
+		togglePieces(game, side, move);
+
+		if (!legal) {
+			return count;
+		}
+
+		// same static value as Move.getValue()
+		int ownIndex = side * 6 + piece;
+		double weight = 1.0 - PIECE_SQUARE_VALUES[ownIndex][from] + PIECE_SQUARE_VALUES[ownIndex][to];
+		if (captured >= 0) {
+			weight += PIECE_SQUARE_VALUES[(1 - side) * 6 + captured][to] * KILL_VALUE_FACTOR;
+		}
+		if (promotion >= 0) {
+			weight += PIECE_SQUARE_VALUES[side * 6 + promotion][from] * CONVERT_VALUE_FACTOR;
+		}
+
+		moveBuffer[count] = move;
+		weightBuffer[count] = weight;
+		return count + 1;
+	}
+
+	private void makeMove(int game, int move) {
+		int side = sideToMove[game];
+		togglePieces(game, side, move);
+
+		int piece = decodePiece(move);
+		int captured = decodeCaptured(move);
+		int promotion = decodePromotion(move);
+
+		double materialDelta = 0;
+		if (captured >= 0) {
+			materialDelta += MATERIAL_VALUES[captured];
+		}
+		if (promotion >= 0) {
+			materialDelta += MATERIAL_VALUES[promotion] - MATERIAL_VALUES[PAWN];
+		}
+		materialBalance[game] += side == WHITE ? materialDelta : -materialDelta;
+
+		if (captured >= 0 || piece == PAWN) {
+			halfMoveClock[game] = 0;
+		} else {
+			halfMoveClock[game]++;
+		}
+		sideToMove[game] = 1 - side;
+		plies[game]++;
+		simulatedPlies++;
+	}
+
+	// applying the same move twice restores the original bitboards
+	private void togglePieces(int game, int side, int move) {
+		int piece = decodePiece(move);
+		int from = decodeFrom(move);
+		int to = decodeTo(move);
+		int captured = decodeCaptured(move);
+		int promotion = decodePromotion(move);
+
+		long fromBit = 1L << from;
+		long toBit = 1L << to;
+
+		bitboards[side * 6 + piece][game] ^= fromBit;
+		bitboards[side * 6 + (promotion >= 0 ? promotion : piece)][game] ^= toBit;
+		sidePieces[side][game] ^= fromBit | toBit;
+		if (captured >= 0) {
+			bitboards[(1 - side) * 6 + captured][game] ^= toBit;
+			sidePieces[1 - side][game] ^= toBit;
+		}
+	}
+
+	private int findPiece(int game, int side, int square) {
+		long bit = 1L << square;
+		if ((sidePieces[side][game] & bit) == 0) {
+			return -1;
+		}
+		for (int piece = PAWN; piece <= KING; piece++) {
+			if ((bitboards[side * 6 + piece][game] & bit) != 0) {
+				return piece;
+			}
+		}
+		return -1;
+	}
+
+	private int getKingSquare(int game, int side) {
+		long king = bitboards[side * 6 + KING][game];
+		if (king == 0) {
+			return -1;
+		}
+		return Long.numberOfTrailingZeros(king);
+	}
+
+	private boolean isAttacked(int game, int square, int bySide) {
+		if (square < 0) {
+			return false;
+		}
+
+		int offset = bySide * 6;
+		if ((PAWN_ATTACKS[1 - bySide][square] & bitboards[offset + PAWN][game]) != 0) {
+			return true;
+		}
+		if ((KNIGHT_ATTACKS[square] & bitboards[offset + KNIGHT][game]) != 0) {
+			return true;
+		}
+		if ((KING_ATTACKS[square] & bitboards[offset + KING][game]) != 0) {
+			return true;
+		}
+
+		long occupied = sidePieces[WHITE][game] | sidePieces[BLACK][game];
+		long diagonalAttackers = bitboards[offset + BISHOP][game] | bitboards[offset + QUEEN][game];
+		if (diagonalAttackers != 0 && (slidingAttacks(square, occupied, BISHOP_DIRECTIONS) & diagonalAttackers) != 0) {
+			return true;
+		}
+		long straightAttackers = bitboards[offset + ROOK][game] | bitboards[offset + QUEEN][game];
+		if (straightAttackers != 0 && (slidingAttacks(square, occupied, ROOK_DIRECTIONS) & straightAttackers) != 0) {
+			return true;
+		}
+		return false;
+	}
+
+	private boolean isInsufficientMaterial(int game) {
+		if ((bitboards[PAWN][game] | bitboards[ROOK][game] | bitboards[QUEEN][game]
+				| bitboards[6 + PAWN][game] | bitboards[6 + ROOK][game] | bitboards[6 + QUEEN][game]) != 0) {
+			return false;
+		}
+
+		long knights = bitboards[KNIGHT][game] | bitboards[6 + KNIGHT][game];
+		long bishops = bitboards[BISHOP][game] | bitboards[6 + BISHOP][game];
+		if (Long.bitCount(knights | bishops) <= 1) {
+			return true;
+		}
+		return knights == 0 && ((bishops & DARK_SQUARES) == 0 || (bishops & ~DARK_SQUARES) == 0);
+	}
+
+	private double evaluate(int game) {
+		double value = 0;
+		for (int i = 0; i < 12; i++) {
+			long pieces = bitboards[i][game];
+			double sign = i < 6 ? 1 : -1;
+			while (pieces != 0) {
+				int square = Long.numberOfTrailingZeros(pieces);
+				pieces &= pieces - 1;
+				value += sign * PIECE_SQUARE_VALUES[i][square];
+			}
+		}
+		return value;
+	}
+
+	private static long slidingAttacks(int square, long occupied, int[][] directions) {
+		long attacks = 0;
+		int x = square & 7;
+		int y = square >>> 3;
+		for (int[] direction : directions) {
+			int targetX = x + direction[0];
+			int targetY = y + direction[1];
+			while (targetX >= 0 && targetX <= 7 && targetY >= 0 && targetY <= 7) {
+				long bit = 1L << (targetX + targetY * 8);
+				attacks |= bit;
+				if ((occupied & bit) != 0) {
+					break;
+				}
+				targetX += direction[0];
+				targetY += direction[1];
+			}
+		}
+		return attacks;
+	}
+
+	private static long toBits(int x, int y, int[][] deltas) {
+		long bits = 0;
+		for (int[] delta : deltas) {
+			int targetX = x + delta[0];
+			int targetY = y + delta[1];
+			if (targetX >= 0 && targetX <= 7 && targetY >= 0 && targetY <= 7) {
+				bits |= 1L << (targetX + targetY * 8);
+			}
+		}
+		return bits;
+	}
+
+	// piece (3 bits), from (6 bits), to (6 bits), captured piece + 1 (3 bits), promotion piece + 1 (3 bits)
+	private static int encodeMove(int piece, int from, int to, int captured, int promotion) {
+		return piece | (from << 3) | (to << 9) | ((captured + 1) << 15) | ((promotion + 1) << 18);
+	}
+
+	private static int decodePiece(int move) {
+		return move & 0x7;
+	}
+
+	private static int decodeFrom(int move) {
+		return (move >>> 3) & 0x3f;
+	}
+
+	private static int decodeTo(int move) {
+		return (move >>> 9) & 0x3f;
+	}
+
+	private static int decodeCaptured(int move) {
+		return ((move >>> 15) & 0x7) - 1;
+	}
+
+	private static int decodePromotion(int move) {
+		return ((move >>> 18) & 0x7) - 1;
+	}
+}
@@ -0,0 +1,133 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+// Searches a fixed set of positions with a fixed budget and fixed seeds to compare the speed of the engines between commits and machines.
+// The signature is a checksum over the best moves and node counts - it only changes if the search behaves differently.
+public class Bench {
+
+	public static final long DEFAULT_BUDGET = 1000;
+	public static final long DEFAULT_SEED = 20170101;
+
+	private static final String[] POSITIONS = {
+		"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w",
+		"r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w",
+		"r1bq1rk1/ppp2ppp/2np1n2/2b1p3/2B1P3/2NP1N2/PPP2PPP/R1BQ1RK1 b",
+		"r2q1rk1/pp2bppp/2n1pn2/3p4/3P4/2NBPN2/PP3PPP/R2Q1RK1 w",
+		"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w",
+		"6k1/5ppp/8/8/8/8/5PPP/R5K1 w",
+		"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w",
+		"4k3/8/8/8/8/8/4P3/4K3 w",
+	};
+
+	public static class Result {
+		private final long nodeCount;
+		private final long playoutCount;
+		private final long elapsedMilliseconds;
+		private final long signature;
+
+		public Result(long nodeCount, long playoutCount, long elapsedMilliseconds, long signature) {
+			this.nodeCount = nodeCount;
+			this.playoutCount = playoutCount;
+			this.elapsedMilliseconds = elapsedMilliseconds;
+			this.signature = signature;
+		}
+
+		public long getNodeCount() {
+			return nodeCount;
+		}
+
+		public long getPlayoutCount() {
+			return playoutCount;
+		}
+
+		public long getElapsedMilliseconds() {
+			return elapsedMilliseconds;
+		}
+
+		public long getNodesPerSecond() {
+			return nodeCount * 1000 / Math.max(1, elapsedMilliseconds);
+		}
+
+		public long getSignature() {
+			return signature;
+		}
+
+		@Override
+		public String toString() {
+			return "nodes " + nodeCount + " playouts " + playoutCount + " time " + elapsedMilliseconds + " nps " + getNodesPerSecond() + " signature " + signature;
+		}
+	}
+
+	// the budget counts playouts or nodes (depending on the engine) per position
+	public static Result run(ChessEngine chessEngine, long budget, long seed, InfoLogger infoLogger) {
+		CRC32 signature = new CRC32();
+		long totalNodeCount = 0;
+		long totalPlayoutCount = 0;
+		long totalElapsedMilliseconds = 0;
+
+		for (int i = 0; i < POSITIONS.length; i++) {
+			chessEngine.setFen(POSITIONS[i]);
+
+			long nodeCount = chessEngine.getNodeCount();
+			long playoutCount = chessEngine.getPlayoutCount();
+			long startMillis = System.currentTimeMillis();
+
+			String bestMove = chessEngine.searchBudget(budget, seed + i);
+
+			long elapsedMillis = System.currentTimeMillis() - startMillis;
+			nodeCount = chessEngine.getNodeCount() - nodeCount;
+			playoutCount = chessEngine.getPlayoutCount() - playoutCount;
+
+			String line = "position " + (i + 1) + " bestmove " + bestMove + " nodes " + nodeCount + " playouts " + playoutCount;
+			signature.update(line.getBytes(StandardCharsets.UTF_8));
+			infoLogger.info("string bench " + line + " time " + elapsedMillis);
+
+			totalNodeCount += nodeCount;
+			totalPlayoutCount += playoutCount;
+			totalElapsedMilliseconds += elapsedMillis;
+		}
+
+		return new Result(totalNodeCount, totalPlayoutCount, totalElapsedMilliseconds, signature.getValue());
+	}
+
+	public static void main(String[] args) {
+		String engineName = "montecarlo";
+		long budget = DEFAULT_BUDGET;
+		long seed = DEFAULT_SEED;
+
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "-engine":
+				engineName = args[++i];
+				break;
+			case "-budget":
+				budget = Long.parseLong(args[++i]);
+				break;
+			case "-seed":
+				seed = Long.parseLong(args[++i]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option: " + args[i]);
+			}
+		}
+
+		ChessEngine chessEngine;
+		switch (engineName) {
+		case "montecarlo":
+			chessEngine = new MonteCarloChessEngine();
+			break;
+		case "alphabeta":
+			chessEngine = new AlphaBetaChessEngine();
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown engine: " + engineName);
+		}
+		chessEngine.setInfoLogger(message -> {});
+
+		Result result = run(chessEngine, budget, seed, message -> System.out.println(message.substring("string bench ".length())));
+		System.out.println(result);
+		chessEngine.shutdown();
+	}
+}
@@ -1,6 +1,7 @@
 package ch.obermuhlner.genetic.chess.engine;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
@@ -10,6 +11,16 @@ public class Board {
 
 	private static final char[] LETTERS = { 'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h' };
 
+	private static final long[] ZOBRIST_POSITION_KEYS = new long[2 * 6 * 64];
+	private static final long ZOBRIST_BLACK_TO_MOVE_KEY;
+	static {
+		Random random = new Random(20170101);
+		for (int i = 0; i < ZOBRIST_POSITION_KEYS.length; i++) {
+			ZOBRIST_POSITION_KEYS[i] = random.nextLong();
+		}
+		ZOBRIST_BLACK_TO_MOVE_KEY = random.nextLong();
+	}
+
 	private final InfoLogger infoLogger;
 	
 	private final List<Position> positions = new ArrayList<>();
@@ -19,7 +30,13 @@ public class Board {
 	private int halfMoveSinceCaptureOrPawnAdvanceNumber = 0;
 	private int moveNumber = 0;
 	
+	private long hash;
+	private long[] hashHistory = new long[16];
+	private int hashHistoryCount;
+	
 	private Analysis analysis;
+	private List<Move> allMoves;
+	private double[] randomMoveWeights;
 	
 	public Board() {
 		this(new InfoLogger() {
@@ -35,6 +52,8 @@ public class Board {
 	
 	public void clear() {
 		positions.clear();
+		hashHistoryCount = 0;
+		hash = calculateHash();
 	}
 	
 	public void setStartPosition() {
@@ -77,6 +96,7 @@ public class Board {
 		positions.add(new Position(Piece.Pawn, Side.Black, 6, 6));
 		positions.add(new Position(Piece.Pawn, Side.Black, 7, 6));
 		
+		hash = calculateHash();
 		invalidateAnalysis();
 	}
 	
@@ -105,6 +125,7 @@ public class Board {
 		positions.addAll(fenPositions);
 		
 		setSideToMove(fenSide);
+		hash = calculateHash();
 		invalidateAnalysis();
 	}
 
@@ -175,6 +196,9 @@ public class Board {
 	}
 	
 	public void setSideToMove(Side sideToMove) {
+		if (this.sideToMove != sideToMove) {
+			hash ^= ZOBRIST_BLACK_TO_MOVE_KEY;
+		}
 		this.sideToMove = sideToMove;
 		invalidateAnalysis();
 	}
@@ -190,17 +214,28 @@ public class Board {
 	}
 	
 	public void addPosition(Piece piece, Side side, int x, int y) {
-		positions.add(new Position(piece, side, x, y));
+		Position position = new Position(piece, side, x, y);
+		positions.add(position);
+		hash ^= toZobristKey(position);
 		invalidateAnalysis();
 	}
 	
 	private void invalidateAnalysis() {
-		analysis = null;		
+		analysis = null;
+		allMoves = null;
 	}
 
 	private Analysis getAnalysis() {
 		if (analysis == null) {
+			AnalysisEvent event = new AnalysisEvent();
+			event.begin();
+			
 			analysis = new Analysis(this);
+			
+			if (event.shouldCommit()) {
+				event.pieces = positions.size();
+				event.commit();
+			}
 		}
 		
 		return analysis;
@@ -218,16 +253,74 @@ public class Board {
 		return halfMoveSinceCaptureOrPawnAdvanceNumber;
 	}
 	
+	public boolean isFiftyMoveRule() {
+		return halfMoveSinceCaptureOrPawnAdvanceNumber >= 100;
+	}
+	
+	public long getHash() {
+		return hash;
+	}
+	
+	// counts how many times the current position occurred before (only since the last capture or pawn move)
+	public int getRepetitionCount() {
+		int count = 0;
+		int oldest = Math.max(0, hashHistoryCount - halfMoveSinceCaptureOrPawnAdvanceNumber);
+		for (int i = hashHistoryCount - 2; i >= oldest; i -= 2) {
+			if (hashHistory[i] == hash) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	public boolean isInsufficientMaterial() {
+		int minorCount = 0;
+		int knightCount = 0;
+		int bishopSquareColors = 0;
+		for (Position position : positions) {
+			switch (position.getPiece()) {
+			case King:
+				break;
+			case Knight:
+				knightCount++;
+				minorCount++;
+				break;
+			case Bishop:
+				bishopSquareColors |= 1 << ((position.getX() + position.getY()) % 2);
+				minorCount++;
+				break;
+			default:
+				return false;
+			}
+		}
+		
+		if (minorCount <= 1) {
+			return true;
+		}
+		// only bishops that all run on squares of the same color
+		return knightCount == 0 && bishopSquareColors != 3;
+	}
+	
+	public double getMaterialValue(Side side) {
+		double value = 0;
+		for (Position position : positions) {
+			if (position.getSide() == side && position.getPiece() != Piece.King) {
+				value += position.getPiece().getValue();
+			}
+		}
+		return value;
+	}
+	
 	public boolean isFinished() {
-		return getAllMoves().isEmpty();
+		return getCachedAllMoves().isEmpty();
 	}
 	
 	public boolean isMate() {
-		return isCheck() && getAllMoves().isEmpty();
+		return isCheck() && getCachedAllMoves().isEmpty();
 	}
 	
 	public boolean isPatt() {
-		return !isCheck() && getAllMoves().isEmpty();
+		return !isCheck() && getCachedAllMoves().isEmpty();
 	}
 	
 	public boolean isCheck() {
@@ -282,11 +375,36 @@ public class Board {
 	}
 	
 	public List<Move> getAllMoves() {
-		if (isCheck()) {
-			return getAllMovesUnderCheck();
+		return new ArrayList<>(getCachedAllMoves());
+	}
+	
+	private List<Move> getCachedAllMoves() {
+		if (allMoves == null) {
+			if (isCheck()) {
+				allMoves = getAllMovesUnderCheck();
+			} else {
+				allMoves = getAllMovesNormal();
+			}
 		}
 		
-		return getAllMovesNormal();
+		return allMoves;
+	}
+	
+	public Move randomMove(Random random) {
+		List<Move> moves = getCachedAllMoves();
+		if (moves.isEmpty()) {
+			return null;
+		}
+		
+		// called once per ply in the playouts - a single pick from a reused buffer instead of building a sampler for every position
+		if (randomMoveWeights == null || randomMoveWeights.length < moves.size()) {
+			randomMoveWeights = new double[Math.max(64, moves.size())];
+		}
+		for (int i = 0; i < moves.size(); i++) {
+			randomMoveWeights[i] = getValue(moves.get(i));
+		}
+		
+		return moves.get(RandomUtil.pickRandomIndex(random, randomMoveWeights, moves.size()));
 	}
 	
 	private List<Move> getAllMovesUnderCheck() {
@@ -399,9 +517,21 @@ public class Board {
 		
 		Position source = move.getSource();
 		
+		if (hashHistoryCount == hashHistory.length) {
+			hashHistory = Arrays.copyOf(hashHistory, hashHistory.length * 2);
+		}
+		hashHistory[hashHistoryCount++] = hash;
+		
 		positions.remove(source);
 		positions.remove(move.getKill());
 		positions.remove(move.getCastle());
+		hash ^= toZobristKey(source);
+		if (move.getKill() != null) {
+			hash ^= toZobristKey(move.getKill());
+		}
+		if (move.getCastle() != null) {
+			hash ^= toZobristKey(move.getCastle());
+		}
 
 		if (move.getCastle() != null) {
 			// castling (rochade)
@@ -409,18 +539,26 @@ public class Board {
 
 			Position newKingPosition = new Position(Piece.King, source.getSide(), source.getX() + kingDirectionX*2, source.getY());
 			positions.add(newKingPosition);
+			hash ^= toZobristKey(newKingPosition);
 			
 			Position newRookPosition = new Position(Piece.Rook, source.getSide(), source.getX() + kingDirectionX, source.getY());
 			positions.add(newRookPosition);
+			hash ^= toZobristKey(newRookPosition);
 		} else {
 			// normal move (including conversion of pawn)
 			Piece piece = move.getConvert() == null ? source.getPiece() : move.getConvert();
 			Position newPosition = new Position(piece, source.getSide(), move.getTargetX(), move.getTargetY());
 			positions.add(newPosition);
+			hash ^= toZobristKey(newPosition);
 		}
 		
 		sideToMove = sideToMove.otherSide();
-		halfMoveSinceCaptureOrPawnAdvanceNumber++;
+		hash ^= ZOBRIST_BLACK_TO_MOVE_KEY;
+		if (move.getKill() != null || source.getPiece() == Piece.Pawn) {
+			halfMoveSinceCaptureOrPawnAdvanceNumber = 0;
+		} else {
+			halfMoveSinceCaptureOrPawnAdvanceNumber++;
+		}
 		moveNumber++;
 
 		invalidateAnalysis();
@@ -464,10 +602,29 @@ public class Board {
 		board.sideToMove = sideToMove;
 		board.moveNumber = moveNumber;
 		board.halfMoveSinceCaptureOrPawnAdvanceNumber = halfMoveSinceCaptureOrPawnAdvanceNumber;
+		board.hash = hash;
+		
+		// only the positions since the last capture or pawn move are relevant for repetitions
+		int relevantHistoryCount = Math.min(hashHistoryCount, halfMoveSinceCaptureOrPawnAdvanceNumber);
+		board.hashHistory = Arrays.copyOfRange(hashHistory, hashHistoryCount - relevantHistoryCount, hashHistoryCount + Math.max(16, relevantHistoryCount));
+		board.hashHistoryCount = relevantHistoryCount;
 				
 		return board;
 	}
 	
+	private long calculateHash() {
+		long result = sideToMove == Side.Black ? ZOBRIST_BLACK_TO_MOVE_KEY : 0;
+		for (Position position : positions) {
+			result ^= toZobristKey(position);
+		}
+		return result;
+	}
+	
+	private static long toZobristKey(Position position) {
+		int index = ((position.getSide().ordinal() * 6 + position.getPiece().ordinal()) * 64) + position.getX() + position.getY() * 8;
+		return ZOBRIST_POSITION_KEYS[index];
+	}
+	
 	@Override
 	public String toString() {
 		return toFenString();
@@ -545,34 +702,11 @@ public class Board {
 			System.out.println("ALL   " + allMoves);
 			
 			if (!allMoves.isEmpty()) {
-				Move move = randomMove(allMoves, random);
+				Move move = board.randomMove(random);
 				System.out.println("MOVE  " + move);
 				board.move(move);
 			}
 			System.out.println();
 		}
 	}
-	
-	private static Move randomMove(List<Move> allMoves, Random random) {
-		if (allMoves.isEmpty()) {
-			return null;
-		}
-		
-		double total = 0;
-		for (Move move : allMoves) {
-			total += move.getValue();
-		}
-		
-		double r = random.nextDouble() * total;
-		
-		total = 0;
-		for (Move move : allMoves) {
-			total += move.getValue();
-			if (r < total) {
-				return move;
-			}
-		}
-
-		return allMoves.get(allMoves.size() - 1);
-	}
 }
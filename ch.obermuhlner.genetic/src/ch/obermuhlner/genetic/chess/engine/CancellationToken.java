@@ -0,0 +1,32 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+// Shared between the caller and a running calculation, which checks it often enough to stop within milliseconds.
+public class CancellationToken {
+
+	public static final CancellationToken NONE = new CancellationToken() {
+		@Override
+		public void cancel() {
+			throw new UnsupportedOperationException();
+		}
+	};
+
+	private volatile boolean cancelled;
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	// cancelled together with the parent token or as soon as the deadline has passed
+	public static CancellationToken withDeadline(CancellationToken parent, long deadlineMillis) {
+		return new CancellationToken() {
+			@Override
+			public boolean isCancelled() {
+				return super.isCancelled() || parent.isCancelled() || System.currentTimeMillis() >= deadlineMillis;
+			}
+		};
+	}
+}
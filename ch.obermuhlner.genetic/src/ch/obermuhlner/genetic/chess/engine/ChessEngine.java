@@ -1,5 +1,8 @@
 package ch.obermuhlner.genetic.chess.engine;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
 public interface ChessEngine {
 
 	void setLookupTable(LookupTable lookupTable);
@@ -18,13 +21,48 @@ public interface ChessEngine {
 	
 	double evaluate();
 
-	CalculationState<String> bestMove(long thinkingMilliseconds);
+	default CalculationState<String> bestMove(long thinkingMilliseconds) {
+		return bestMove(thinkingMilliseconds, new CancellationToken());
+	}
+	
+	CalculationState<String> bestMove(long thinkingMilliseconds, CancellationToken cancellationToken);
+	
+	// Searches synchronously with a budget of playouts or nodes instead of a time limit and without lookups.
+	// The result only depends on the position, the budget and the seed - not on the speed of the machine.
+	String searchBudget(long budget, long seed);
 	
 	void move(String move);
 	
+	void speculateLookup(String move);
+	
+	// positions searched since the engine was created (alpha-beta nodes or playout plies)
+	long getNodeCount();
+	
+	// playouts played since the engine was created (0 for engines that do not play playouts)
+	long getPlayoutCount();
+	
+	// stops the threads of the engine, the engine cannot be used anymore
+	void shutdown();
+	
 	interface CalculationState<T> {
 		boolean isFinished();
 		
+		// cancels the calculation without waiting for it, the result is the best move found so far
+		void stop();
+		
+		// stops the calculation and waits for the result
 		T getResult();
+		
+		long getSavedMilliseconds();
+		
+		// completes as soon as the calculation has finished
+		CompletableFuture<T> getFuture();
+		
+		// receives the intermediate results while the calculation is running
+		void addProgressListener(Consumer<T> listener);
+		
+		default void addCompletionListener(Consumer<T> listener) {
+			getFuture().thenAccept(listener);
+		}
 	}
 }
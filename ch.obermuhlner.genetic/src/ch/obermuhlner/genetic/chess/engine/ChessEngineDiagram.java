@@ -7,12 +7,21 @@ import java.awt.Image;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 import javax.imageio.ImageIO;
 
@@ -29,7 +38,8 @@ public class ChessEngineDiagram {
 			};
 	
 	private static final int FIELD_PIXELS = 55;
-	private static final int IMAGE_OFFSET = (FIELD_PIXELS - 45) / 2;
+	private static final int PIECE_PIXELS = 45;
+	private static final int IMAGE_OFFSET = (FIELD_PIXELS - PIECE_PIXELS) / 2;
 	private static final int CIRCLE_RADIUS_PIXELS = 3;
 	private static final int VALUE_OFFSET_PIXELS = 4;
 	
@@ -49,7 +59,36 @@ public class ChessEngineDiagram {
 		}
 	};
 
-	public static void main(String[] args) {
+	// renders and encodes the diagrams in the background, so that the search thread does not wait for them
+	private static final ExecutorService renderExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+		Thread thread = new Thread(runnable, "diagram");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	static {
+		// the diagrams are only drawn into images, no display is needed
+		if (System.getProperty("java.awt.headless") == null) {
+			System.setProperty("java.awt.headless", "true");
+		}
+		// encode in memory instead of going through a temporary file
+		ImageIO.setUseCache(false);
+	}
+
+	// the piece images are read and scaled only once, when the first diagram is rendered
+	private static class PieceImages {
+		private static final Map<String, BufferedImage> images = loadPieceImages();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length > 0 && args[0].equals("-batch")) {
+			// -batch <fen file> [<directory>] renders one diagram for every FEN line
+			File directory = new File(args.length > 2 ? args[2] : ".");
+			List<File> diagramFiles = createDiagrams(readFens(new File(args[1])), directory).join();
+			System.out.println("Created " + diagramFiles.size() + " diagrams in " + directory);
+			return;
+		}
+		
 		String fen = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR";
 		long thinkMilliseconds = DEFAULT_THINK_MILLISECONDS;
 		int moveCount = DEFAULT_MOVE_COUNT;
@@ -92,21 +131,113 @@ public class ChessEngineDiagram {
 	}
 
 	public static void createDiagram(String diagramFileName, Board board, List<? extends EntityWithValue<Position>> allPositions, List<? extends EntityWithValue<Move>> allMoves) {
+		try {
+			writeDiagram(diagramFileName, board, allPositions, allMoves);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	// Takes a snapshot of the board and the values on the calling thread (the statistics of a running search keep changing)
+	// and renders it in the background. The future returns the written file.
+	public static CompletableFuture<File> createDiagramAsync(String diagramFileName, Board board, List<? extends EntityWithValue<Position>> allPositions, List<? extends EntityWithValue<Move>> allMoves) {
+		Board boardSnapshot = board.clone();
+		List<EntityWithValue<Position>> positionsSnapshot = snapshot(allPositions);
+		List<EntityWithValue<Move>> movesSnapshot = snapshot(allMoves);
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return writeDiagram(diagramFileName, boardSnapshot, positionsSnapshot, movesSnapshot);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, renderExecutor);
+	}
+
+	// renders the diagrams of all FENs in parallel (with the static values of the pieces) into the specified directory,
+	// positions that occur several times are rendered only once
+	public static CompletableFuture<List<File>> createDiagrams(List<String> fens, File directory) {
+		Map<String, Board> diagramFileNameToBoard = new LinkedHashMap<>();
+		for (String fen : fens) {
+			Board board = new Board();
+			board.setFenString(fen);
+			diagramFileNameToBoard.putIfAbsent(new File(directory, toDiagramFileName(board)).getPath(), board);
+		}
+		
+		List<CompletableFuture<File>> diagramFutures = new ArrayList<>();
+		for (Map.Entry<String, Board> entry : diagramFileNameToBoard.entrySet()) {
+			diagramFutures.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return writeDiagram(entry.getKey(), entry.getValue(), chessEngine.getAllPositions(entry.getValue()), null);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, renderExecutor));
+		}
+		
+		return CompletableFuture.allOf(diagramFutures.toArray(new CompletableFuture<?>[0]))
+				.thenApply(ignored -> diagramFutures.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+	}
+
+	private static List<String> readFens(File file) throws IOException {
+		List<String> fens = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line = reader.readLine();
+			while (line != null) {
+				line = line.trim();
+				if (!line.isEmpty() && !line.startsWith("#")) {
+					fens.add(line);
+				}
+				line = reader.readLine();
+			}
+		}
+		return fens;
+	}
+
+	private static <E> List<EntityWithValue<E>> snapshot(List<? extends EntityWithValue<E>> entitiesWithValue) {
+		if (entitiesWithValue == null) {
+			return null;
+		}
+		List<EntityWithValue<E>> result = new ArrayList<>(entitiesWithValue.size());
+		for (EntityWithValue<E> entityWithValue : entitiesWithValue) {
+			result.add(new EntityValueTuple<>(entityWithValue.getEntity(), entityWithValue.getValue()));
+		}
+		return result;
+	}
+
+	private static File writeDiagram(String diagramFileName, Board board, List<? extends EntityWithValue<Position>> allPositions, List<? extends EntityWithValue<Move>> allMoves) throws IOException {
 		if (diagramFileName == null) {
 			diagramFileName = toDiagramFileName(board);
 		}
+		
+		BufferedImage image = renderDiagram(board, allPositions, allMoves);
+		File diagramFile = new File(diagramFileName);
+		ImageIO.write(image, "png", diagramFile);
+		return diagramFile;
+	}
 
-		Map<String, Image> pieceImages = new HashMap<>();
-		try {
-			for(String pieceName : PIECE_NAMES) {
+	private static Map<String, BufferedImage> loadPieceImages() {
+		Map<String, BufferedImage> pieceImages = new HashMap<>();
+		for(String pieceName : PIECE_NAMES) {
+			try {
 				File pathToFile = Paths.get("resources", pieceName + ".png").toFile();
-				Image image = ImageIO.read(pathToFile);
-				pieceImages.put(pieceName, image);
+				BufferedImage image = ImageIO.read(pathToFile);
+				
+				BufferedImage scaledImage = new BufferedImage(PIECE_PIXELS, PIECE_PIXELS, BufferedImage.TYPE_INT_ARGB);
+				Graphics2D graphics = scaledImage.createGraphics();
+				graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+				graphics.drawImage(image, 0, 0, PIECE_PIXELS, PIECE_PIXELS, imageObserver);
+				graphics.dispose();
+				pieceImages.put(pieceName, scaledImage);
+			} catch (IOException e) {
+				e.printStackTrace();
 			}
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
-				
+		return pieceImages;
+	}
+
+	public static BufferedImage renderDiagram(Board board, List<? extends EntityWithValue<Position>> allPositions, List<? extends EntityWithValue<Move>> allMoves) {
+		Map<String, BufferedImage> pieceImages = PieceImages.images;
+		
 		BufferedImage image = new BufferedImage(FIELD_PIXELS * 8, FIELD_PIXELS * 8, BufferedImage.TYPE_INT_RGB);
 		Graphics2D graphics = image.createGraphics();
 		graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
@@ -126,7 +257,7 @@ public class ChessEngineDiagram {
 				Position position = board.getPosition(x, y);
 				if (position != null) {
 					String pieceName = toPieceName(position);
-					Image pieceImage = pieceImages.get(pieceName);
+					BufferedImage pieceImage = pieceImages.get(pieceName);
 					
 					graphics.drawImage(pieceImage, pixelX + IMAGE_OFFSET, pixelY + IMAGE_OFFSET, imageObserver);
 				}
@@ -191,12 +322,8 @@ public class ChessEngineDiagram {
 				graphics.fillOval(toFieldCenterPixelX(targetX) - CIRCLE_RADIUS_PIXELS, toFieldCenterPixelY(targetY) - CIRCLE_RADIUS_PIXELS, 2*CIRCLE_RADIUS_PIXELS, 2*CIRCLE_RADIUS_PIXELS);
 			}
 		}
-		try {
-			File diagramFile = new File(diagramFileName);
-			ImageIO.write(image, "png", diagramFile);
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		graphics.dispose();
+		return image;
 	}
 
 	private static int toInt(double value) {
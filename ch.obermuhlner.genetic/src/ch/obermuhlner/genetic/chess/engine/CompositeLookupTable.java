@@ -1,12 +1,36 @@
 package ch.obermuhlner.genetic.chess.engine;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+// Asks the lookup tables in priority order, the first move found wins.
+// In parallel mode all tables are probed concurrently and the probes of lower priority are cancelled as soon as a table answers.
 public class CompositeLookupTable implements LookupTable {
 
+	private static final InfoLogger NO_LOGGER = message -> {};
+
+	private static final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "composite-lookup");
+		thread.setDaemon(true);
+		return thread;
+	});
+
 	private final List<LookupTable> lookupTables;
 
+	private volatile boolean parallel;
+
+	private volatile Map<Long, String> speculatedMoves = new ConcurrentHashMap<>();
+	private final List<Future<?>> speculations = new ArrayList<>();
+
 	public CompositeLookupTable(LookupTable... lookupTables) {
 		this(Arrays.asList(lookupTables));
 	}
@@ -15,15 +39,123 @@ public class CompositeLookupTable implements LookupTable {
 		this.lookupTables = lookupTables;
 	}
 
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
 	@Override
 	public String bestMove(Board board, InfoLogger infoLogger) {
+		String speculatedMove = speculatedMoves.get(board.getHash());
+		if (speculatedMove != null) {
+			return speculatedMove;
+		}
+
+		if (parallel) {
+			return bestMoveParallel(board, infoLogger);
+		}
+
 		for (LookupTable lookupTable : lookupTables) {
-			String bestMove = lookupTable.bestMove(board, infoLogger);
+			String bestMove = probe(lookupTable, board, infoLogger);
 			if (bestMove != null) {
 				return bestMove;
 			}
 		}
-		
+
+		return null;
+	}
+
+	// probes the positions after all moves in the background, so that the answer is ready when the opponent has moved
+	// (only found moves are kept - a miss may be a timeout or a failure, so the position is probed again)
+	@Override
+	public void speculate(Board board, InfoLogger infoLogger) {
+		Map<Long, String> moves = new ConcurrentHashMap<>();
+		synchronized (speculations) {
+			for (Future<?> speculation : speculations) {
+				speculation.cancel(true);
+			}
+			speculations.clear();
+			speculatedMoves = moves;
+
+			for (Move move : board.getAllMoves()) {
+				Board speculationBoard = board.clone();
+				speculationBoard.move(move);
+				speculations.add(executor.submit(() -> {
+					String bestMove = parallel ? bestMoveParallel(speculationBoard, NO_LOGGER) : bestMove(speculationBoard, NO_LOGGER);
+					if (bestMove != null && !Thread.currentThread().isInterrupted()) {
+						moves.put(speculationBoard.getHash(), bestMove);
+					}
+				}));
+			}
+		}
+	}
+
+	private String bestMoveParallel(Board board, InfoLogger infoLogger) {
+		AtomicInteger answeredPriority = new AtomicInteger(Integer.MAX_VALUE);
+		List<Future<String>> probes = new ArrayList<>();
+
+		for (int i = 0; i < lookupTables.size(); i++) {
+			int priority = i;
+			LookupTable lookupTable = lookupTables.get(i);
+			Board probeBoard = board.clone();
+			synchronized (probes) {
+				probes.add(executor.submit(() -> {
+					if (priority > answeredPriority.get()) {
+						return null;
+					}
+					String bestMove = probe(lookupTable, probeBoard, infoLogger);
+					if (bestMove != null) {
+						answeredPriority.accumulateAndGet(priority, Math::min);
+						cancel(probes, priority + 1);
+					}
+					return bestMove;
+				}));
+			}
+		}
+
+		try {
+			for (int i = 0; i < probes.size(); i++) {
+				String bestMove = getProbeResult(probes.get(i));
+				if (bestMove != null) {
+					return bestMove;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			cancel(probes, 0);
+		}
 		return null;
 	}
+
+	private static String getProbeResult(Future<String> probe) throws InterruptedException {
+		try {
+			return probe.get();
+		} catch (CancellationException | ExecutionException e) {
+			return null;
+		}
+	}
+
+	private static void cancel(List<Future<String>> probes, int fromIndex) {
+		synchronized (probes) {
+			for (int i = fromIndex; i < probes.size(); i++) {
+				probes.get(i).cancel(true);
+			}
+		}
+	}
+
+	private static String probe(LookupTable lookupTable, Board board, InfoLogger infoLogger) {
+		LookupEvent event = new LookupEvent();
+		event.begin();
+
+		String bestMove = lookupTable.bestMove(board, infoLogger);
+
+		if (event.shouldCommit()) {
+			event.lookupTable = lookupTable.getClass().getSimpleName();
+			event.hit = bestMove != null;
+			event.move = bestMove;
+			event.commit();
+		}
+
+		return bestMove;
+	}
 }
@@ -0,0 +1,217 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Distance to mate of all positions with one material signature (for example "KQvK"), one byte per position.
+// The index is the side to move plus the squares of the pieces in signature order (identical pieces sorted by square).
+// Values are from the perspective of the side to move: +n wins with mate in n plies, -(n+1) is mated in n plies, 0 is a draw.
+public class EndgameTable {
+
+	public static final int MAX_PIECE_COUNT = 4;
+
+	public static final byte ILLEGAL = Byte.MIN_VALUE;
+	public static final byte DRAW = 0;
+
+	private static final int FILE_MAGIC = 0x45475431; // "EGT1"
+	private static final int HEADER_SIZE = 8;
+
+	static final String PIECE_ORDER = "KQRBNP";
+
+	private final String signature;
+	private final Piece[] pieces;
+	private final Side[] sides;
+	private final ByteBuffer values;
+
+	private EndgameTable(String signature, ByteBuffer values) {
+		this.signature = signature;
+		
+		String[] sideSignatures = signature.split("v");
+		if (sideSignatures.length != 2) {
+			throw new IllegalArgumentException("Illegal signature: " + signature);
+		}
+		int pieceCount = signature.length() - 1;
+		if (pieceCount > MAX_PIECE_COUNT) {
+			throw new IllegalArgumentException("Too many pieces: " + signature);
+		}
+		pieces = new Piece[pieceCount];
+		sides = new Side[pieceCount];
+		int pieceIndex = 0;
+		for (int sideIndex = 0; sideIndex < 2; sideIndex++) {
+			for (char character : sideSignatures[sideIndex].toCharArray()) {
+				pieces[pieceIndex] = Piece.ofCharacter(character);
+				sides[pieceIndex] = sideIndex == 0 ? Side.White : Side.Black;
+				pieceIndex++;
+			}
+		}
+		
+		if (values.capacity() != size(pieceCount)) {
+			throw new IllegalArgumentException("Expected " + size(pieceCount) + " values for " + signature + ", found " + values.capacity());
+		}
+		this.values = values;
+	}
+
+	public static EndgameTable create(String signature) {
+		byte[] values = new byte[size(signature.length() - 1)];
+		Arrays.fill(values, ILLEGAL);
+		return new EndgameTable(signature, ByteBuffer.wrap(values));
+	}
+
+	public static EndgameTable load(File file) throws IOException {
+		String signature = file.getName().replaceFirst("\\.egt$", "");
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			if (randomAccessFile.readInt() != FILE_MAGIC) {
+				throw new IOException("Not an endgame table file: " + file);
+			}
+			int pieceCount = randomAccessFile.readInt();
+			ByteBuffer values = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, size(pieceCount));
+			return new EndgameTable(signature, values);
+		}
+	}
+
+	public void save(File directory) throws IOException {
+		File file = new File(directory, signature + ".egt");
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(FILE_MAGIC);
+			header.putInt(pieces.length);
+			header.flip();
+			FileChannel channel = out.getChannel();
+			channel.write(header);
+			channel.write(values.duplicate());
+		}
+	}
+
+	public String getSignature() {
+		return signature;
+	}
+
+	public int getPieceCount() {
+		return pieces.length;
+	}
+
+	public Piece getPiece(int pieceIndex) {
+		return pieces[pieceIndex];
+	}
+
+	public Side getSide(int pieceIndex) {
+		return sides[pieceIndex];
+	}
+
+	public int size() {
+		return values.capacity();
+	}
+
+	public byte getValue(int index) {
+		return values.get(index);
+	}
+
+	public void setValue(int index, byte value) {
+		values.put(index, value);
+	}
+
+	public static int getIndex(int[] squares, Side sideToMove) {
+		int index = 0;
+		for (int i = squares.length - 1; i >= 0; i--) {
+			index = index * 64 + squares[i];
+		}
+		return index * 2 + (sideToMove == Side.White ? 0 : 1);
+	}
+
+	public static int getSquare(int index, int pieceIndex) {
+		return (index >> (1 + 6 * pieceIndex)) & 63;
+	}
+
+	public static Side getSideToMove(int index) {
+		return (index & 1) == 0 ? Side.White : Side.Black;
+	}
+
+	// index of the board in this table, the board is mirrored and the colors swapped if flipped is set
+	public int getIndex(Board board, boolean flipped) {
+		int[] squares = new int[pieces.length];
+		int pieceIndex = 0;
+		while (pieceIndex < pieces.length) {
+			Piece piece = pieces[pieceIndex];
+			Side side = sides[pieceIndex];
+			int slotCount = 1;
+			while (pieceIndex + slotCount < pieces.length && pieces[pieceIndex + slotCount] == piece && sides[pieceIndex + slotCount] == side) {
+				slotCount++;
+			}
+			
+			List<Integer> pieceSquares = new ArrayList<>();
+			for (Position position : board.getPositions()) {
+				Side boardSide = flipped ? position.getSide().otherSide() : position.getSide();
+				if (position.getPiece() == piece && boardSide == side) {
+					int y = flipped ? 7 - position.getY() : position.getY();
+					pieceSquares.add(position.getX() + y * 8);
+				}
+			}
+			if (pieceSquares.size() != slotCount) {
+				return -1;
+			}
+			pieceSquares.sort(null);
+			for (int square : pieceSquares) {
+				squares[pieceIndex++] = square;
+			}
+		}
+		Side sideToMove = flipped ? board.getSideToMove().otherSide() : board.getSideToMove();
+		return getIndex(squares, sideToMove);
+	}
+
+	public static String getSignature(Board board) {
+		return getSideSignature(board, Side.White) + "v" + getSideSignature(board, Side.Black);
+	}
+
+	public static String getFlippedSignature(String signature) {
+		String[] sideSignatures = signature.split("v");
+		return sideSignatures[1] + "v" + sideSignatures[0];
+	}
+
+	private static String getSideSignature(Board board, Side side) {
+		StringBuilder result = new StringBuilder();
+		for (char pieceCharacter : PIECE_ORDER.toCharArray()) {
+			Piece piece = Piece.ofCharacter(pieceCharacter);
+			for (Position position : board.getPositions()) {
+				if (position.getPiece() == piece && position.getSide() == side) {
+					result.append(pieceCharacter);
+				}
+			}
+		}
+		return result.toString();
+	}
+
+	public static boolean isWin(byte value) {
+		return value > 0;
+	}
+
+	public static boolean isLoss(byte value) {
+		return value < 0 && value != ILLEGAL;
+	}
+
+	// plies until mate (0 for a draw)
+	public static int getDistanceToMate(byte value) {
+		if (value > 0) {
+			return value;
+		}
+		if (value < 0 && value != ILLEGAL) {
+			return -value - 1;
+		}
+		return 0;
+	}
+
+	private static int size(int pieceCount) {
+		return 2 << (6 * pieceCount);
+	}
+
+	@Override
+	public String toString() {
+		return signature;
+	}
+}
@@ -0,0 +1,545 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+// Generates EndgameTables by retrograde analysis: starting from the mates every pass resolves the positions
+// that win (odd passes) or lose (even passes) in exactly one more ply, until nothing changes - the rest is drawn.
+// Captures and promotions lead into the tables of smaller material signatures, which are generated first.
+// Uses the full chess rules except castling and en passant (independent of the Board move generation).
+public class EndgameTableGenerator {
+
+	private static final int MAX_DISTANCE = 126;
+	private static final int CHUNK_SIZE = 1 << 14;
+
+	private static final int[][] KING_OFFSETS = { { 1, 0 }, { 1, 1 }, { 0, 1 }, { -1, 1 }, { -1, 0 }, { -1, -1 }, { 0, -1 }, { 1, -1 } };
+	private static final int[][] KNIGHT_OFFSETS = { { 1, 2 }, { 2, 1 }, { 2, -1 }, { 1, -2 }, { -1, -2 }, { -2, -1 }, { -2, 1 }, { -1, 2 } };
+	private static final int[][] ROOK_DIRECTIONS = { { 1, 0 }, { 0, 1 }, { -1, 0 }, { 0, -1 } };
+	private static final int[][] BISHOP_DIRECTIONS = { { 1, 1 }, { -1, 1 }, { -1, -1 }, { 1, -1 } };
+	private static final Piece[] PROMOTION_PIECES = { Piece.Queen, Piece.Rook, Piece.Bishop, Piece.Knight };
+
+	private final EndgameTablebase endgameTablebase;
+	private final File directory;
+
+	// generated tables are added to the tablebase and saved into the directory (if not null)
+	public EndgameTableGenerator(EndgameTablebase endgameTablebase, File directory) {
+		this.endgameTablebase = endgameTablebase;
+		this.directory = directory;
+	}
+
+	// returns the table from the tablebase or generates it (together with all missing tables it depends on)
+	public EndgameTable generate(String signature) {
+		EndgameTable table = endgameTablebase.getTable(signature);
+		if (table != null) {
+			return table;
+		}
+
+		table = EndgameTable.create(signature);
+		new Generation(table).run();
+
+		if (directory != null) {
+			try {
+				table.save(directory);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		endgameTablebase.addTable(table);
+		return table;
+	}
+
+	// table reached by a capture or promotion, the table is null if the material is insufficient to mate
+	private static class Dependency {
+		final EndgameTable table;
+		final boolean flipped;
+
+		Dependency(EndgameTable table, boolean flipped) {
+			this.table = table;
+			this.flipped = flipped;
+		}
+
+		byte getValue(Piece[] pieces, Side[] sides, int[] squares, Side sideToMove) {
+			if (table == null) {
+				return EndgameTable.DRAW;
+			}
+
+			int[] tableSquares = new int[table.getPieceCount()];
+			int used = 0;
+			for (int tableIndex = 0; tableIndex < tableSquares.length; tableIndex++) {
+				int bestIndex = -1;
+				int bestSquare = 64;
+				for (int i = 0; i < pieces.length; i++) {
+					Side side = flipped ? sides[i].otherSide() : sides[i];
+					if ((used & (1 << i)) == 0 && squares[i] >= 0 && pieces[i] == table.getPiece(tableIndex) && side == table.getSide(tableIndex)) {
+						int square = flipped ? squares[i] ^ 56 : squares[i];
+						if (square < bestSquare) {
+							bestSquare = square;
+							bestIndex = i;
+						}
+					}
+				}
+				used |= 1 << bestIndex;
+				tableSquares[tableIndex] = bestSquare;
+			}
+
+			Side tableSideToMove = flipped ? sideToMove.otherSide() : sideToMove;
+			return table.getValue(EndgameTable.getIndex(tableSquares, tableSideToMove));
+		}
+	}
+
+	private Dependency getDependency(Piece[] pieces, Side[] sides, int removedIndex) {
+		StringBuilder white = new StringBuilder();
+		StringBuilder black = new StringBuilder();
+		int minorCount = 0;
+		boolean majorOrPawn = false;
+		for (char pieceCharacter : EndgameTable.PIECE_ORDER.toCharArray()) {
+			for (int i = 0; i < pieces.length; i++) {
+				if (i != removedIndex && pieces[i].getCharacter() == Character.toLowerCase(pieceCharacter)) {
+					(sides[i] == Side.White ? white : black).append(pieceCharacter);
+					if (pieces[i] == Piece.Knight || pieces[i] == Piece.Bishop) {
+						minorCount++;
+					} else if (pieces[i] != Piece.King) {
+						majorOrPawn = true;
+					}
+				}
+			}
+		}
+		if (!majorOrPawn && minorCount <= 1) {
+			return new Dependency(null, false);
+		}
+
+		String signature = white + "v" + black;
+		EndgameTable table = endgameTablebase.getTable(signature);
+		if (table != null) {
+			return new Dependency(table, false);
+		}
+		table = endgameTablebase.getTable(EndgameTable.getFlippedSignature(signature));
+		if (table != null) {
+			return new Dependency(table, true);
+		}
+		return new Dependency(generate(signature), false);
+	}
+
+	private class Generation {
+		private final EndgameTable table;
+		private final int pieceCount;
+		private final Piece[] pieces;
+		private final Side[] sides;
+
+		// [captured piece index or pieceCount][promoted pawn index or pieceCount][promotion piece]
+		private final Dependency[][][] dependencies;
+		private int maxDependencyDistance;
+
+		Generation(EndgameTable table) {
+			this.table = table;
+			pieceCount = table.getPieceCount();
+			pieces = new Piece[pieceCount];
+			sides = new Side[pieceCount];
+			for (int i = 0; i < pieceCount; i++) {
+				pieces[i] = table.getPiece(i);
+				sides[i] = table.getSide(i);
+			}
+
+			dependencies = new Dependency[pieceCount + 1][pieceCount + 1][PROMOTION_PIECES.length];
+			for (int captured = 0; captured <= pieceCount; captured++) {
+				if (captured < pieceCount && pieces[captured] == Piece.King) {
+					continue;
+				}
+				for (int promoted = 0; promoted <= pieceCount; promoted++) {
+					if (promoted < pieceCount && (pieces[promoted] != Piece.Pawn || promoted == captured)) {
+						continue;
+					}
+					for (int promotion = 0; promotion < PROMOTION_PIECES.length; promotion++) {
+						if (captured == pieceCount && promoted == pieceCount) {
+							continue;
+						}
+						Piece[] dependencyPieces = pieces.clone();
+						if (promoted < pieceCount) {
+							dependencyPieces[promoted] = PROMOTION_PIECES[promotion];
+						}
+						Dependency dependency = getDependency(dependencyPieces, sides, captured);
+						dependencies[captured][promoted][promotion] = dependency;
+						if (dependency.table != null) {
+							maxDependencyDistance = Math.max(maxDependencyDistance, getMaxDistance(dependency.table));
+						}
+					}
+				}
+			}
+		}
+
+		void run() {
+			int chunkCount = (table.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+			runPass(chunkCount, 0);
+
+			int emptyPassCount = 0;
+			for (int pass = 1; emptyPassCount < 2 || pass <= maxDependencyDistance + 1; pass++) {
+				if (pass > MAX_DISTANCE) {
+					throw new IllegalStateException("Distance to mate exceeds " + MAX_DISTANCE + " plies: " + table.getSignature());
+				}
+				long changeCount = runPass(chunkCount, pass);
+				emptyPassCount = changeCount == 0 ? emptyPassCount + 1 : 0;
+			}
+		}
+
+		private long runPass(int chunkCount, int pass) {
+			LongAdder changeCount = new LongAdder();
+			IntStream.range(0, chunkCount).parallel().forEach(chunk -> {
+				Worker worker = new Worker();
+				int endIndex = Math.min(table.size(), (chunk + 1) * CHUNK_SIZE);
+				int changes = 0;
+				for (int index = chunk * CHUNK_SIZE; index < endIndex; index++) {
+					if (pass == 0 ? worker.initialize(index) : worker.resolve(index, pass)) {
+						changes++;
+					}
+				}
+				changeCount.add(changes);
+			});
+			return changeCount.sum();
+		}
+
+		private class Worker {
+			private final int[] squares = new int[pieceCount];
+			private final int[] childSquares = new int[pieceCount];
+			private final int[] occupancy = new int[64];
+			private Side sideToMove;
+
+			private int pass;
+			private boolean resolved;
+			private int moveCount;
+			private boolean allChildrenWin;
+			private int maxChildDistance;
+
+			// marks the illegal positions and the mates
+			boolean initialize(int index) {
+				decode(index);
+
+				boolean legal = true;
+				for (int i = 0; i < pieceCount; i++) {
+					if (occupancy[squares[i]] != i + 1) {
+						legal = false; // two pieces on the same square
+					}
+					if (pieces[i] == Piece.Pawn && (squares[i] < 8 || squares[i] >= 56)) {
+						legal = false;
+					}
+					if (i > 0 && pieces[i] == pieces[i - 1] && sides[i] == sides[i - 1] && squares[i] < squares[i - 1]) {
+						legal = false; // identical pieces must be sorted by square
+					}
+				}
+				if (legal && isAttacked(getKingSquare(sideToMove.otherSide()), sideToMove, -1)) {
+					legal = false;
+				}
+
+				clearOccupancy();
+				if (!legal) {
+					return false;
+				}
+
+				table.setValue(index, EndgameTable.DRAW);
+				decode(index);
+				pass = 0;
+				generateMoves();
+				clearOccupancy();
+				if (moveCount == 0 && isAttacked(getKingSquare(sideToMove), sideToMove.otherSide(), -1)) {
+					table.setValue(index, (byte) -1);
+					return true;
+				}
+				return false;
+			}
+
+			boolean resolve(int index, int pass) {
+				if (table.getValue(index) != EndgameTable.DRAW) {
+					return false;
+				}
+
+				decode(index);
+				this.pass = pass;
+				generateMoves();
+				clearOccupancy();
+
+				if (pass % 2 == 1) {
+					if (resolved) {
+						table.setValue(index, (byte) pass);
+						return true;
+					}
+				} else {
+					if (moveCount > 0 && allChildrenWin && maxChildDistance == pass - 1) {
+						table.setValue(index, (byte) -(pass + 1));
+						return true;
+					}
+				}
+				return false;
+			}
+
+			private void decode(int index) {
+				sideToMove = EndgameTable.getSideToMove(index);
+				for (int i = 0; i < pieceCount; i++) {
+					squares[i] = EndgameTable.getSquare(index, i);
+					occupancy[squares[i]] = i + 1;
+				}
+			}
+
+			private void clearOccupancy() {
+				for (int i = 0; i < pieceCount; i++) {
+					occupancy[squares[i]] = 0;
+				}
+			}
+
+			private int getKingSquare(Side side) {
+				for (int i = 0; i < pieceCount; i++) {
+					if (pieces[i] == Piece.King && sides[i] == side) {
+						return squares[i];
+					}
+				}
+				throw new IllegalStateException("No king: " + table.getSignature());
+			}
+
+			private void generateMoves() {
+				resolved = false;
+				moveCount = 0;
+				allChildrenWin = true;
+				maxChildDistance = 0;
+
+				for (int i = 0; i < pieceCount && !resolved; i++) {
+					if (sides[i] != sideToMove) {
+						continue;
+					}
+					int x = squares[i] & 7;
+					int y = squares[i] >> 3;
+					switch (pieces[i]) {
+					case King:
+						for (int[] offset : KING_OFFSETS) {
+							addMoveIfFree(i, x + offset[0], y + offset[1]);
+						}
+						break;
+					case Knight:
+						for (int[] offset : KNIGHT_OFFSETS) {
+							addMoveIfFree(i, x + offset[0], y + offset[1]);
+						}
+						break;
+					case Bishop:
+						addRayMoves(i, x, y, BISHOP_DIRECTIONS);
+						break;
+					case Rook:
+						addRayMoves(i, x, y, ROOK_DIRECTIONS);
+						break;
+					case Queen:
+						addRayMoves(i, x, y, BISHOP_DIRECTIONS);
+						addRayMoves(i, x, y, ROOK_DIRECTIONS);
+						break;
+					case Pawn:
+						addPawnMoves(i, x, y);
+						break;
+					}
+				}
+			}
+
+			private void addRayMoves(int pieceIndex, int x, int y, int[][] directions) {
+				for (int[] direction : directions) {
+					int targetX = x + direction[0];
+					int targetY = y + direction[1];
+					while (targetX >= 0 && targetX < 8 && targetY >= 0 && targetY < 8) {
+						addMoveIfFree(pieceIndex, targetX, targetY);
+						if (occupancy[targetX + targetY * 8] != 0) {
+							break;
+						}
+						targetX += direction[0];
+						targetY += direction[1];
+					}
+				}
+			}
+
+			private void addPawnMoves(int pieceIndex, int x, int y) {
+				int direction = sides[pieceIndex] == Side.White ? 1 : -1;
+				int startY = sides[pieceIndex] == Side.White ? 1 : 6;
+
+				int targetY = y + direction;
+				if (occupancy[x + targetY * 8] == 0) {
+					addPawnMove(pieceIndex, x, targetY);
+					if (y == startY && occupancy[x + (targetY + direction) * 8] == 0) {
+						addPawnMove(pieceIndex, x, targetY + direction);
+					}
+				}
+				for (int targetX = x - 1; targetX <= x + 1; targetX += 2) {
+					if (targetX >= 0 && targetX < 8) {
+						int target = occupancy[targetX + targetY * 8];
+						if (target != 0 && sides[target - 1] != sideToMove) {
+							addPawnMove(pieceIndex, targetX, targetY);
+						}
+					}
+				}
+			}
+
+			private void addPawnMove(int pieceIndex, int targetX, int targetY) {
+				if (targetY == 0 || targetY == 7) {
+					for (int promotion = 0; promotion < PROMOTION_PIECES.length && !resolved; promotion++) {
+						addLegalMove(pieceIndex, targetX + targetY * 8, promotion);
+					}
+				} else {
+					addLegalMove(pieceIndex, targetX + targetY * 8, -1);
+				}
+			}
+
+			private void addMoveIfFree(int pieceIndex, int targetX, int targetY) {
+				if (targetX < 0 || targetX >= 8 || targetY < 0 || targetY >= 8) {
+					return;
+				}
+				int target = occupancy[targetX + targetY * 8];
+				if (target != 0 && sides[target - 1] == sideToMove) {
+					return;
+				}
+				addLegalMove(pieceIndex, targetX + targetY * 8, -1);
+			}
+
+			private void addLegalMove(int pieceIndex, int targetSquare, int promotion) {
+				if (resolved) {
+					return;
+				}
+
+				int sourceSquare = squares[pieceIndex];
+				int capturedIndex = occupancy[targetSquare] - 1;
+
+				// make move
+				occupancy[sourceSquare] = 0;
+				occupancy[targetSquare] = pieceIndex + 1;
+				squares[pieceIndex] = targetSquare;
+				if (capturedIndex >= 0) {
+					squares[capturedIndex] = -1;
+				}
+
+				boolean legal = !isAttacked(getKingSquare(sideToMove), sideToMove.otherSide(), capturedIndex);
+				if (legal) {
+					moveCount++;
+					if (pass > 0) {
+						evaluateChild(getChildValue(capturedIndex, pieceIndex, promotion));
+					}
+				}
+
+				// unmake move
+				squares[pieceIndex] = sourceSquare;
+				occupancy[sourceSquare] = pieceIndex + 1;
+				if (capturedIndex >= 0) {
+					squares[capturedIndex] = targetSquare;
+					occupancy[targetSquare] = capturedIndex + 1;
+				} else {
+					occupancy[targetSquare] = 0;
+				}
+			}
+
+			private byte getChildValue(int capturedIndex, int movedIndex, int promotion) {
+				Side childSideToMove = sideToMove.otherSide();
+				if (capturedIndex >= 0 || promotion >= 0) {
+					Dependency dependency = dependencies[capturedIndex >= 0 ? capturedIndex : pieceCount][promotion >= 0 ? movedIndex : pieceCount][Math.max(0, promotion)];
+					if (promotion < 0) {
+						return dependency.getValue(pieces, sides, squares, childSideToMove);
+					}
+					Piece[] promotedPieces = pieces.clone();
+					promotedPieces[movedIndex] = PROMOTION_PIECES[promotion];
+					return dependency.getValue(promotedPieces, sides, squares, childSideToMove);
+				}
+
+				System.arraycopy(squares, 0, childSquares, 0, pieceCount);
+				// keep identical pieces sorted by square
+				for (int i = 1; i < pieceCount; i++) {
+					for (int j = i; j > 0 && pieces[j] == pieces[j - 1] && sides[j] == sides[j - 1] && childSquares[j] < childSquares[j - 1]; j--) {
+						int square = childSquares[j];
+						childSquares[j] = childSquares[j - 1];
+						childSquares[j - 1] = square;
+					}
+				}
+				return table.getValue(EndgameTable.getIndex(childSquares, childSideToMove));
+			}
+
+			private void evaluateChild(byte childValue) {
+				if (pass % 2 == 1) {
+					// win if a move leads to a loss of the opponent in pass - 1 plies
+					if (childValue == -pass) {
+						resolved = true;
+					}
+				} else {
+					// loss if all moves lead to a win of the opponent
+					if (childValue <= 0) {
+						allChildrenWin = false;
+						resolved = true; // no need to look at more moves
+					} else {
+						maxChildDistance = Math.max(maxChildDistance, childValue);
+					}
+				}
+			}
+
+			private boolean isAttacked(int square, Side attackerSide, int ignoredIndex) {
+				for (int i = 0; i < pieceCount; i++) {
+					if (i != ignoredIndex && sides[i] == attackerSide && squares[i] >= 0 && attacks(i, square)) {
+						return true;
+					}
+				}
+				return false;
+			}
+
+			private boolean attacks(int pieceIndex, int square) {
+				int source = squares[pieceIndex];
+				int deltaX = (square & 7) - (source & 7);
+				int deltaY = (square >> 3) - (source >> 3);
+				int absDeltaX = Math.abs(deltaX);
+				int absDeltaY = Math.abs(deltaY);
+
+				switch (pieces[pieceIndex]) {
+				case King:
+					return Math.max(absDeltaX, absDeltaY) == 1;
+				case Knight:
+					return absDeltaX * absDeltaY == 2;
+				case Pawn:
+					return absDeltaX == 1 && deltaY == (sides[pieceIndex] == Side.White ? 1 : -1);
+				case Bishop:
+					return absDeltaX == absDeltaY && absDeltaX > 0 && isPathFree(source, deltaX, deltaY);
+				case Rook:
+					return (deltaX == 0) != (deltaY == 0) && isPathFree(source, deltaX, deltaY);
+				case Queen:
+					return (absDeltaX == absDeltaY || deltaX == 0 || deltaY == 0) && (absDeltaX | absDeltaY) != 0 && isPathFree(source, deltaX, deltaY);
+				}
+				return false;
+			}
+
+			private boolean isPathFree(int source, int deltaX, int deltaY) {
+				int stepX = Integer.signum(deltaX);
+				int stepY = Integer.signum(deltaY);
+				int steps = Math.max(Math.abs(deltaX), Math.abs(deltaY));
+				int x = source & 7;
+				int y = source >> 3;
+				for (int i = 1; i < steps; i++) {
+					x += stepX;
+					y += stepY;
+					if (occupancy[x + y * 8] != 0) {
+						return false;
+					}
+				}
+				return true;
+			}
+		}
+	}
+
+	private static int getMaxDistance(EndgameTable table) {
+		int maxDistance = 0;
+		for (int index = 0; index < table.size(); index++) {
+			maxDistance = Math.max(maxDistance, EndgameTable.getDistanceToMate(table.getValue(index)));
+		}
+		return maxDistance;
+	}
+
+	public static void main(String[] args) {
+		File directory = new File(args.length > 0 ? args[0] : "tablebase");
+		directory.mkdirs();
+		String[] signatures = args.length > 1 ? args[1].split(",") : new String[] { "KQvK", "KRvK", "KPvK" };
+
+		EndgameTablebase endgameTablebase = new EndgameTablebase(directory);
+		EndgameTableGenerator generator = new EndgameTableGenerator(endgameTablebase, directory);
+		for (String signature : signatures) {
+			long startMillis = System.currentTimeMillis();
+			EndgameTable table = generator.generate(signature);
+			long endMillis = System.currentTimeMillis();
+			System.out.println(signature + " : " + table.size() + " positions, longest mate " + getMaxDistance(table) + " plies, " + (endMillis - startMillis) + " ms");
+		}
+	}
+}
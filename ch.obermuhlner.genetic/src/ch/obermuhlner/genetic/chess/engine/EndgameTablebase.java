@@ -0,0 +1,138 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Endgame tables produced by the EndgameTableGenerator, from a local directory (one memory-mapped <signature>.egt file
+// per material signature, loaded on first use) or added in memory by the generator.
+// Usable as root lookup table and as exact playout terminator in the PlayoutAdjudicator.
+// This is the generator's own format for up to EndgameTable.MAX_PIECE_COUNT pieces - there is no Syzygy .rtbw/.rtbz probing.
+public class EndgameTablebase implements LookupTable {
+
+	public static final int UNKNOWN = Integer.MIN_VALUE;
+
+	private final File directory;
+
+	private final Map<String, EndgameTable> tables = new ConcurrentHashMap<>();
+	private final Set<String> missingSignatures = ConcurrentHashMap.newKeySet();
+
+	public EndgameTablebase() {
+		this(null);
+	}
+
+	public EndgameTablebase(File directory) {
+		this.directory = directory;
+	}
+
+	// Syzygy files in the directory are ignored, callers should warn about them
+	public static boolean containsSyzygyTables(File directory) {
+		String[] names = directory.list((dir, name) -> name.endsWith(".rtbw") || name.endsWith(".rtbz"));
+		return names != null && names.length > 0;
+	}
+
+	public void addTable(EndgameTable table) {
+		tables.put(table.getSignature(), table);
+		missingSignatures.remove(table.getSignature());
+	}
+
+	public EndgameTable getTable(String signature) {
+		EndgameTable table = tables.get(signature);
+		if (table != null || directory == null || missingSignatures.contains(signature)) {
+			return table;
+		}
+		
+		File file = new File(directory, signature + ".egt");
+		if (file.exists()) {
+			try {
+				table = EndgameTable.load(file);
+				tables.put(signature, table);
+				return table;
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		missingSignatures.add(signature);
+		return null;
+	}
+
+	// distance to mate value of the EndgameTable for the side to move or UNKNOWN
+	public int probe(Board board) {
+		if (board.getPositions().size() > EndgameTable.MAX_PIECE_COUNT) {
+			return UNKNOWN;
+		}
+		if (board.isInsufficientMaterial()) {
+			return EndgameTable.DRAW;
+		}
+		
+		String signature = EndgameTable.getSignature(board);
+		boolean flipped = false;
+		EndgameTable table = getTable(signature);
+		if (table == null) {
+			flipped = true;
+			table = getTable(EndgameTable.getFlippedSignature(signature));
+		}
+		if (table == null) {
+			return UNKNOWN;
+		}
+		
+		int index = table.getIndex(board, flipped);
+		if (index < 0) {
+			return UNKNOWN;
+		}
+		byte value = table.getValue(index);
+		return value == EndgameTable.ILLEGAL ? UNKNOWN : value;
+	}
+
+	// winner if both sides play perfectly, null for a draw (only valid if the probe is not UNKNOWN)
+	public Side getWinner(Board board, int value) {
+		if (value > 0) {
+			return board.getSideToMove();
+		}
+		if (value < 0) {
+			return board.getSideToMove().otherSide();
+		}
+		return null;
+	}
+
+	@Override
+	public String bestMove(Board board, InfoLogger infoLogger) {
+		int value = probe(board);
+		if (value == UNKNOWN) {
+			return null;
+		}
+		
+		Move bestMove = null;
+		int bestScore = Integer.MIN_VALUE;
+		for (Move move : board.getAllMoves()) {
+			Board childBoard = board.clone();
+			childBoard.move(move);
+			int childValue = probe(childBoard);
+			if (childValue == UNKNOWN) {
+				continue;
+			}
+			
+			// win fast, lose slow
+			int score;
+			if (childValue < 0) {
+				score = 1000 + childValue;
+			} else if (childValue > 0) {
+				score = -1000 + childValue;
+			} else {
+				score = 0;
+			}
+			if (score > bestScore) {
+				bestScore = score;
+				bestMove = move;
+			}
+		}
+		
+		if (bestMove == null) {
+			return null;
+		}
+		infoLogger.info("string endgame table " + EndgameTable.getSignature(board) + " value " + value + " recommends " + bestMove.toUciString());
+		return bestMove.toUciString();
+	}
+}
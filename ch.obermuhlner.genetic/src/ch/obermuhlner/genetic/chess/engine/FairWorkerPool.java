@@ -0,0 +1,173 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+// Fixed number of worker threads shared by many sessions.
+// Every session has its own queue and the workers take the next task from the sessions in round robin order,
+// so that a session with many queued tasks cannot starve the others.
+public class FairWorkerPool {
+
+	private final Object lock = new Object();
+	private final List<SessionExecutor> sessions = new ArrayList<>();
+	private int nextSessionIndex;
+
+	private final List<Thread> workers = new ArrayList<>();
+	private boolean shutdown;
+
+	public FairWorkerPool(int threads) {
+		for (int i = 0; i < threads; i++) {
+			Thread worker = new Thread(this::work, "worker-" + i);
+			worker.setDaemon(true);
+			worker.start();
+			workers.add(worker);
+		}
+	}
+
+	public int getThreads() {
+		return workers.size();
+	}
+
+	// sessions that are not yet shut down or still have tasks to finish
+	public int getSessionCount() {
+		synchronized (lock) {
+			return sessions.size();
+		}
+	}
+
+	// executor for the tasks of one session - shutting it down does not affect the other sessions
+	public ExecutorService newSession() {
+		SessionExecutor session = new SessionExecutor();
+		synchronized (lock) {
+			if (shutdown) {
+				throw new RejectedExecutionException("pool is shut down");
+			}
+			sessions.add(session);
+		}
+		return session;
+	}
+
+	public void shutdown() {
+		synchronized (lock) {
+			shutdown = true;
+			lock.notifyAll();
+		}
+	}
+
+	private void work() {
+		while (true) {
+			SessionExecutor session;
+			Runnable task;
+			synchronized (lock) {
+				task = null;
+				session = null;
+				while (task == null) {
+					if (shutdown) {
+						return;
+					}
+					for (int i = 0; i < sessions.size() && task == null; i++) {
+						int index = (nextSessionIndex + i) % sessions.size();
+						task = sessions.get(index).tasks.poll();
+						if (task != null) {
+							session = sessions.get(index);
+							session.runningCount++;
+							nextSessionIndex = index + 1;
+						}
+					}
+					if (task == null) {
+						try {
+							lock.wait();
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+			}
+
+			try {
+				task.run();
+			} finally {
+				synchronized (lock) {
+					session.runningCount--;
+					if (session.isTerminated()) {
+						sessions.remove(session);
+						lock.notifyAll();
+					}
+				}
+			}
+		}
+	}
+
+	private class SessionExecutor extends AbstractExecutorService {
+		private final Deque<Runnable> tasks = new ArrayDeque<>();
+		private int runningCount;
+		private boolean sessionShutdown;
+
+		@Override
+		public void execute(Runnable command) {
+			synchronized (lock) {
+				if (sessionShutdown || shutdown) {
+					throw new RejectedExecutionException("session is shut down");
+				}
+				tasks.add(command);
+				lock.notifyAll();
+			}
+		}
+
+		@Override
+		public void shutdown() {
+			synchronized (lock) {
+				sessionShutdown = true;
+				if (isTerminated()) {
+					sessions.remove(this);
+					lock.notifyAll();
+				}
+			}
+		}
+
+		@Override
+		public List<Runnable> shutdownNow() {
+			synchronized (lock) {
+				List<Runnable> pendingTasks = new ArrayList<>(tasks);
+				tasks.clear();
+				shutdown();
+				return pendingTasks;
+			}
+		}
+
+		@Override
+		public boolean isShutdown() {
+			synchronized (lock) {
+				return sessionShutdown;
+			}
+		}
+
+		@Override
+		public boolean isTerminated() {
+			synchronized (lock) {
+				return sessionShutdown && tasks.isEmpty() && runningCount == 0;
+			}
+		}
+
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+			long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+			synchronized (lock) {
+				while (!isTerminated()) {
+					long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+					if (remainingMillis <= 0) {
+						return false;
+					}
+					lock.wait(remainingMillis);
+				}
+				return true;
+			}
+		}
+	}
+}
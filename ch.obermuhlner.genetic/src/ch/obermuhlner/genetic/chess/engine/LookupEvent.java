@@ -0,0 +1,23 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("ch.obermuhlner.genetic.chess.Lookup")
+@Label("Lookup Table Probe")
+@Category({ "Genetic", "Chess Engine" })
+@StackTrace(false)
+class LookupEvent extends Event {
+
+	@Label("Lookup Table")
+	String lookupTable;
+
+	@Label("Hit")
+	boolean hit;
+
+	@Label("Move")
+	String move;
+}
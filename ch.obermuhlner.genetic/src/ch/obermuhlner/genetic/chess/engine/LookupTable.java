@@ -6,4 +6,8 @@ public interface LookupTable {
 		return null;
 	}
 
+	// called while the opponent thinks about the next move
+	default void speculate(Board board, InfoLogger infoLogger) {
+	}
+
 }
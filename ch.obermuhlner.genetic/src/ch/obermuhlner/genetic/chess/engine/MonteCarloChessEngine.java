@@ -4,19 +4,46 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 
-public class MonteCarloChessEngine implements ChessEngine {
+public class MonteCarloChessEngine extends AbstractChessEngine {
 
-	private static final int DEFAULT_MOVE_COUNT = 200;
+	public static final int DEFAULT_MOVE_COUNT = 200;
+
+	private static final double EARLY_STOP_DELTA = 0.05;
+	private static final int EARLY_STOP_MIN_PLAY_COUNT = 20;
+
+	private static final long PROGRESS_INTERVAL_MILLIS = 250;
+
+	private static final int MAX_LEARNED_PLAY_COUNT = 100;
 
 	private final Random random = new Random();
 
 	private final ExecutorService executor = Executors.newSingleThreadExecutor();
 	
+	private ExecutorService playoutExecutor;
+	private boolean sharedPlayoutExecutor;
+	
+	private int threads = 1;
+	
+	private int playoutLength = DEFAULT_MOVE_COUNT;
+	
+	private final PlayoutAdjudicator playoutAdjudicator = new PlayoutAdjudicator();
+	
+	private boolean quiescenceSearch = true;
+	
+	private boolean batchPlayouts = false;
+	
+	private PositionStatisticsStore positionStatisticsStore;
+	
+	private final LongAdder playoutCount = new LongAdder();
+	private final LongAdder playoutPlies = new LongAdder();
+	
 	public interface EntityWithValue<E> {
 		E getEntity();
 		double getValue();
@@ -27,6 +54,9 @@ public class MonteCarloChessEngine implements ChessEngine {
 		int playCount;
 		int whiteWins;
 		int blackWins;
+		int learnedPlayCount;
+		int learnedWhiteWins;
+		int learnedBlackWins;
 		
 		public MoveStatistic(Move move) {
 			this.move = move;
@@ -45,6 +75,14 @@ public class MonteCarloChessEngine implements ChessEngine {
 			//return playValue * move.getValue();
 			return playValue;
 		}
+
+		// Hoeffding bound for game results in the range [-1, 1]
+		public double getConfidenceRadius(double delta) {
+			if (playCount == 0) {
+				return Double.POSITIVE_INFINITY;
+			}
+			return 2 * Math.sqrt(Math.log(2 / delta) / (2 * playCount));
+		}
 		
 		@Override
 		public String toString() {
@@ -52,102 +90,125 @@ public class MonteCarloChessEngine implements ChessEngine {
 		}
 	}
 
-	private LookupTable lookupTable = new LookupTable() {
-	};
-
-	private InfoLogger infoLogger;
-
-	private Board board;
-
-	private List<Move> allMoves;
-
 	public MonteCarloChessEngine() {
 	}
 
-	public void setLookupTable(LookupTable lookupTable) {
-		this.lookupTable = lookupTable;
+	public PlayoutAdjudicator getPlayoutAdjudicator() {
+		return playoutAdjudicator;
 	}
 	
 	@Override
-	public void setInfoLogger(InfoLogger infoLogger) {
-		this.infoLogger = infoLogger;
+	public long getPlayoutCount() {
+		return playoutCount.sum();
 	}
 	
-	@Override
-	public void setStartPosition() {
-		board = new Board(infoLogger);
-		board.setStartPosition();
+	public long getPlayoutPlies() {
+		return playoutPlies.sum();
 	}
-
+	
+	// a node is a ply simulated in a playout - the same count is reported as nodes in the UCI info
 	@Override
-	public void setFen(String fen) {
-		board = new Board(infoLogger);
-		board.setFenString(fen);
+	public long getNodeCount() {
+		return getPlayoutPlies();
 	}
 	
-	@Override
-	public String getFen() {
-		return board.toFenString();
+	// resolve pending captures with a quiescence search before evaluating a position at the end of a playout
+	public void setQuiescenceSearch(boolean quiescenceSearch) {
+		this.quiescenceSearch = quiescenceSearch;
 	}
 	
-	@Override
-	public String getPosition(int x, int y) {
-		Position position = board.getPosition(x, y);
-		if (position == null) {
-			return " ";
+	// seed the root statistics from a store of previous searches and write the new results back into it
+	public void setPositionStatisticsStore(PositionStatisticsStore positionStatisticsStore) {
+		this.positionStatisticsStore = positionStatisticsStore;
+	}
+	
+	// number of threads that play the playouts of a search round (ignored while a shared executor is used)
+	public void setThreads(int threads) {
+		if (sharedPlayoutExecutor) {
+			return;
+		}
+		if (playoutExecutor != null) {
+			playoutExecutor.shutdown();
+			playoutExecutor = null;
+		}
+		this.threads = threads;
+		if (threads > 1) {
+			playoutExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+				Thread thread = new Thread(runnable, "playout");
+				thread.setDaemon(true);
+				return thread;
+			});
 		}
-		
-		return String.valueOf(position.getCharacter());
 	}
-
-	@Override
-	public boolean isWhiteToMove() {
-		return board.getSideToMove() == Side.White;
+	
+	public int getThreads() {
+		return threads;
+	}
+	
+	// Plays the playouts of a search round on the session executor of a pool shared with other engines (see FairWorkerPool.newSession()).
+	// The session executor belongs to this engine and is shut down with it, the pool itself keeps running.
+	public void setSharedPlayoutExecutor(ExecutorService playoutExecutor, int threads) {
+		setThreads(1);
+		this.playoutExecutor = playoutExecutor;
+		this.threads = threads;
+		sharedPlayoutExecutor = true;
 	}
 	
 	@Override
-	public double evaluate() {
-		return board.getValue();
+	public void shutdown() {
+		executor.shutdown();
+		if (playoutExecutor != null) {
+			playoutExecutor.shutdown();
+		}
+	}
+	
+	// maximum number of plies of a playout in the search
+	public void setPlayoutLength(int playoutLength) {
+		this.playoutLength = playoutLength;
+	}
+	
+	public int getPlayoutLength() {
+		return playoutLength;
+	}
+	
+	// play the games of evaluatePlaying() in lockstep as one BatchPlayout (static move values as policy, no quiescence search)
+	public void setBatchPlayouts(boolean batchPlayouts) {
+		this.batchPlayouts = batchPlayouts;
 	}
 
-	class BestMoveCalculationState implements CalculationState<String>, Runnable {
+	class BestMoveCalculationState extends AbstractCalculationState<String> {
 		private static final boolean CREATE_DIAGRAMS = false;
 		
-		private volatile boolean finished = false;
-		private volatile String result;
 		private long thinkMilliseconds;
-		private final CountDownLatch countDownLatch = new CountDownLatch(1);
 		
-		public BestMoveCalculationState(long thinkMilliseconds) {
+		private long startMillis;
+		private long lastProgressMillis;
+		private long startPlayoutCount;
+		private long startPlayoutPlies;
+		
+		private long hash;
+		private List<MoveStatistic> rootStatistics;
+		private List<MoveStatistic> reportStatistics;
+		
+		public BestMoveCalculationState(long thinkMilliseconds, CancellationToken cancellationToken) {
+			super(cancellationToken);
 			this.thinkMilliseconds = thinkMilliseconds;
 		}
-		
+
 		@Override
-		public boolean isFinished() {
-			return finished;
+		protected String fallbackResult() {
+			String bestMove = super.fallbackResult();
+			return bestMove != null ? bestMove : findAnyMove();
 		}
-	
-		@Override
-		public String getResult() {
-			finished = true;
 		
-			try {
-				countDownLatch.await();
-			} catch (InterruptedException e) {
-				// ignore
-			}
-			
-			return result;
-		}
-
 		@Override
-		public void run() {
-			String lookupMove = lookupTable.bestMove(board, infoLogger);
-			if (lookupMove != null) {
-				result = lookupMove;
-				
-			} else if (thinkMilliseconds == 0) {
-				result = toMoveString(findBestMoveWithoutThinking(board));
+		protected String calculate() {
+			String result = null;
+			CompletableFuture<String> lookupFuture = lookupBestMoveAsync();
+			
+			if (thinkMilliseconds == 0) {
+				String lookupMove = waitForLookupMove(lookupFuture);
+				result = lookupMove != null ? lookupMove : toMoveString(findBestMoveWithoutThinking(board));
 				
 			} else {
 				List<Move> allMoves = board.getAllMoves();
@@ -155,18 +216,42 @@ public class MonteCarloChessEngine implements ChessEngine {
 					List<MoveStatistic> moveStatistics = allMoves.stream()
 							.map(move -> new MoveStatistic(move))
 							.collect(Collectors.toList());
-					int moveCount = DEFAULT_MOVE_COUNT;
+					rootStatistics = new ArrayList<>(moveStatistics);
+					hash = board.getHash();
+					if (positionStatisticsStore != null) {
+						loadLearnedStatistics(hash, rootStatistics);
+					}
+					int moveCount = playoutLength;
 					long averagePlayMillis = 10;
 					
 					long reductionMilliseconds = thinkMilliseconds * 2 / 3;
 					
-					while (thinkMilliseconds > 0 && !finished) {
+					startMillis = System.currentTimeMillis();
+					lastProgressMillis = startMillis;
+					startPlayoutCount = playoutCount.sum();
+					startPlayoutPlies = playoutPlies.sum();
+					
+					String lookupMove = null;
+					while (thinkMilliseconds > 0 && !isStopped() && lookupMove == null) {
 						moveStatistics = reduceStatistics(moveStatistics, thinkMilliseconds, reductionMilliseconds, averagePlayMillis);
 						
 						long thinkStartMillis = System.currentTimeMillis();
 					
-						for (MoveStatistic moveStatistic : moveStatistics) {
-							play(board, moveStatistic, moveCount);
+						if (playoutExecutor != null) {
+							lookupMove = getLookupMove(lookupFuture);
+							if (lookupMove == null) {
+								playParallel(moveStatistics, moveCount);
+								printProgressIfDue(moveStatistics);
+							}
+						} else {
+							for (MoveStatistic moveStatistic : moveStatistics) {
+								lookupMove = getLookupMove(lookupFuture);
+								if (lookupMove != null || isStopped()) {
+									break;
+								}
+								play(board, moveStatistic, moveCount, getCancellationToken());
+								printProgressIfDue(moveStatistics);
+							}
 						}
 						
 						long thinkEndMillis = System.currentTimeMillis();
@@ -175,70 +260,222 @@ public class MonteCarloChessEngine implements ChessEngine {
 						
 						averagePlayMillis = thinkDeltaMillis / moveStatistics.size();
 						//System.out.println("TIME   remaining " + thinkMilliseconds + " ms, thought " + thinkDeltaMillis + " ms, average " + averagePlayMillis + " ms");
+						
+						if (thinkMilliseconds > 0 && isBestMoveSeparated(moveStatistics, thinkMilliseconds / Math.max(1, thinkDeltaMillis))) {
+							savedMilliseconds = thinkMilliseconds;
+							infoLogger.info("string early stop saved " + savedMilliseconds + " ms");
+							break;
+						}
 					}
 					
-					sortStatistics(moveStatistics);
+					printProgress(moveStatistics, System.currentTimeMillis());
 					
-					for (MoveStatistic moveStatistic : moveStatistics) {
-						infoLogger.info("string statistics " + moveStatistic);
-					}
+					sortStatistics(moveStatistics);
+					reportStatistics = moveStatistics;
 					
-					if (CREATE_DIAGRAMS) {
-						ChessEngineDiagram.createDiagram(null, board, null, moveStatistics);
-					}
 					Move bestMove = moveStatistics.get(0).move;
 					result = toMoveString(bestMove);
+					
+					if (lookupMove != null) {
+						// the lookup arrived in time - use it instead of the search
+						savedMilliseconds = Math.max(0, thinkMilliseconds);
+						infoLogger.info("string lookup recommends " + lookupMove + " after " + (System.currentTimeMillis() - startMillis) + " ms of search");
+						result = lookupMove;
+					}
 				}
 			}
 
 			printMoveScore(result);
-
-			finished = true;
-			countDownLatch.countDown();
+			
+			return result;
+		}
+		
+		@Override
+		protected void report(String result) {
+			if (reportStatistics == null) {
+				return;
+			}
+			
+			if (positionStatisticsStore != null) {
+				storeLearnedStatistics(hash, rootStatistics);
+			}
+			
+			for (MoveStatistic moveStatistic : reportStatistics) {
+				infoLogger.info("string statistics " + moveStatistic);
+			}
+			infoLogger.info("string adjudication " + playoutAdjudicator);
+			
+			if (CREATE_DIAGRAMS) {
+				// the search does not wait for the diagram, failures are only logged
+				ChessEngineDiagram.createDiagramAsync(null, board, null, reportStatistics).exceptionally(e -> {
+					infoLogger.info("string diagram failed " + e);
+					e.printStackTrace();
+					return null;
+				});
+			}
+		}
+		
+		// plays one game for every move, the moves are distributed over the playout threads
+		private void playParallel(List<MoveStatistic> moveStatistics, int moveCount) {
+			List<Callable<Void>> playouts = new ArrayList<>();
+			for (MoveStatistic moveStatistic : moveStatistics) {
+				playouts.add(() -> {
+					play(board, moveStatistic, moveCount, getCancellationToken());
+					return null;
+				});
+			}
+			try {
+				playoutExecutor.invokeAll(playouts);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		private void printProgressIfDue(List<MoveStatistic> moveStatistics) {
+			long nowMillis = System.currentTimeMillis();
+			if (nowMillis - lastProgressMillis >= PROGRESS_INTERVAL_MILLIS) {
+				lastProgressMillis = nowMillis;
+				printProgress(moveStatistics, nowMillis);
+			}
+		}
+		
+		// reports the search throughput (plies of all playouts are counted as nodes) and the current best move
+		private void printProgress(List<MoveStatistic> moveStatistics, long nowMillis) {
+			MoveStatistic best = moveStatistics.get(0);
+			for (MoveStatistic moveStatistic : moveStatistics) {
+				if (moveStatistic.getValue() > best.getValue()) {
+					best = moveStatistic;
+				}
+			}
+			
+			long millis = Math.max(1, nowMillis - startMillis);
+			long playouts = playoutCount.sum() - startPlayoutCount;
+			long plies = playoutPlies.sum() - startPlayoutPlies;
+			long playoutsPerSecond = playouts * 1000 / millis;
+			long pliesPerSecond = plies * 1000 / millis;
+			double averagePlies = playouts == 0 ? 0 : (double) plies / playouts;
+			
+			double value = board.getSideToMove() == Side.White ? best.getValue() : -best.getValue();
+			double winRate = (value + 1) / 2;
+			
+			// nodes like getNodeCount(): simulated playout plies
+			infoLogger.info("depth 1 seldepth " + Math.round(averagePlies) + " time " + millis + " nodes " + plies + " nps " + pliesPerSecond + " score cp " + toCentipawns(value) + " pv " + toMoveString(best.move));
+			infoLogger.info(String.format("string playouts %d pps %d plies %d averageplies %.1f best %s winrate %.1f%%", playouts, playoutsPerSecond, plies, averagePlies, toMoveString(best.move), winRate * 100));
+			
+			fireProgress(toMoveString(best.move));
+		}
+	}
+	
+	private void loadLearnedStatistics(long hash, List<MoveStatistic> moveStatistics) {
+		int learnedMoveCount = 0;
+		for (MoveStatistic moveStatistic : moveStatistics) {
+			int index = positionStatisticsStore.find(hash, toMoveCode(moveStatistic.move));
+			if (index >= 0) {
+				int playCount = positionStatisticsStore.getPlayCount(index);
+				int whiteWins = positionStatisticsStore.getWhiteWins(index);
+				int blackWins = positionStatisticsStore.getBlackWins(index);
+				
+				// scale down so that the current search can still change the ranking
+				if (playCount > MAX_LEARNED_PLAY_COUNT) {
+					whiteWins = (int) ((long) whiteWins * MAX_LEARNED_PLAY_COUNT / playCount);
+					blackWins = (int) ((long) blackWins * MAX_LEARNED_PLAY_COUNT / playCount);
+					playCount = MAX_LEARNED_PLAY_COUNT;
+				}
+				
+				moveStatistic.playCount = moveStatistic.learnedPlayCount = playCount;
+				moveStatistic.whiteWins = moveStatistic.learnedWhiteWins = whiteWins;
+				moveStatistic.blackWins = moveStatistic.learnedBlackWins = blackWins;
+				learnedMoveCount++;
+			}
+		}
+		if (learnedMoveCount > 0) {
+			infoLogger.info("string learned statistics for " + learnedMoveCount + " moves");
 		}
 	}
 	
+	private void storeLearnedStatistics(long hash, List<MoveStatistic> moveStatistics) {
+		for (MoveStatistic moveStatistic : moveStatistics) {
+			positionStatisticsStore.addAsync(
+					hash,
+					toMoveCode(moveStatistic.move),
+					moveStatistic.playCount - moveStatistic.learnedPlayCount,
+					moveStatistic.whiteWins - moveStatistic.learnedWhiteWins,
+					moveStatistic.blackWins - moveStatistic.learnedBlackWins);
+		}
+	}
+	
+	// converts an expected game result in the range [-1, 1] into centipawns (logistic model, 400 cp for odds of 10:1)
+	private static int toCentipawns(double value) {
+		double clampedValue = Math.max(-0.99, Math.min(0.99, value));
+		return (int) Math.round(400 * Math.log10((1 + clampedValue) / (1 - clampedValue)));
+	}
+	
 	@Override
-	public CalculationState<String> bestMove(long thinkMilliseconds) {
-		BestMoveCalculationState bestMoveCalculationState = new BestMoveCalculationState(thinkMilliseconds);
+	public CalculationState<String> bestMove(long thinkMilliseconds, CancellationToken cancellationToken) {
+		BestMoveCalculationState bestMoveCalculationState = new BestMoveCalculationState(thinkMilliseconds, cancellationToken);
 		executor.execute(bestMoveCalculationState);
 		
 		return bestMoveCalculationState;
 	}
 	
-	public void printMoveScore(String move) {
-		Board localBoard = board.clone();
-		if (!move.equals("(none)")) {
-			localBoard.move(move);
+	// Plays the budget of playouts in rounds of one playout for every remaining move on the calling thread.
+	// Once a third of the budget is spent every round halves the remaining moves, like the timed search does.
+	@Override
+	public String searchBudget(long playoutBudget, long seed) {
+		random.setSeed(seed);
+		
+		List<Move> allMoves = board.getAllMoves();
+		if (allMoves.isEmpty()) {
+			return toMoveString(null);
 		}
-		int centipawnScore = (int) (localBoard.getValue() * 100);
-		infoLogger.info("score " + centipawnScore + " cp");
 		
-	}
-
-	private String toMoveString(Move move) {
-		if (move == null) {
-			return "(none)";
+		List<MoveStatistic> moveStatistics = allMoves.stream()
+				.map(move -> new MoveStatistic(move))
+				.collect(Collectors.toList());
+		
+		long playouts = 0;
+		while (playouts < playoutBudget) {
+			if (playouts >= playoutBudget / 3 && moveStatistics.size() > 5) {
+				sortStatistics(moveStatistics);
+				moveStatistics = new ArrayList<>(moveStatistics.subList(0, Math.max(5, moveStatistics.size() / 2)));
+			}
+			
+			for (int i = 0; i < moveStatistics.size() && playouts < playoutBudget; i++) {
+				play(board, moveStatistics.get(i), playoutLength, CancellationToken.NONE);
+				playouts++;
+			}
 		}
-	
-		return move.toUciString();
-	}
-
-	@Override
-	public void move(String move) {
-		board.move(move);
+		
+		sortStatistics(moveStatistics);
+		return toMoveString(moveStatistics.get(0).move);
 	}
-
+	
 	public double evaluatePosition(Board board) {
+		return evaluateLeaf(board, CancellationToken.NONE);
+	}
+	
+	private double evaluateLeaf(Board board, CancellationToken cancellationToken) {
+		if (quiescenceSearch) {
+			return new QuiescenceSearch(cancellationToken).evaluate(board);
+		}
 		return board.getValue();
 	}
 
 	public double evaluatePlaying(Board board, int gameCount, int moveCount) {
+		if (batchPlayouts) {
+			BatchPlayout batchPlayout = new BatchPlayout(gameCount);
+			batchPlayout.setup(board);
+			batchPlayout.play(random, moveCount, playoutAdjudicator);
+			playoutCount.add(gameCount);
+			playoutPlies.add(batchPlayout.getSimulatedPlies());
+			return (double)(batchPlayout.getWhiteWinCount() - batchPlayout.getBlackWinCount()) / gameCount;
+		}
+		
 		int whiteWins = 0;
 		int blackWins = 0;
 		
 		for (int game = 0; game < gameCount; game++) {
-			Side winner = playGame(board.clone(), moveCount);
+			Side winner = playGame(board.clone(), moveCount, CancellationToken.NONE);
 			if (winner == Side.White) {
 				whiteWins++;
 			}
@@ -268,16 +505,7 @@ public class MonteCarloChessEngine implements ChessEngine {
 	}
 
 	private Move findBestMoveWithoutThinking(Board board) {
-		allMoves = board.getAllMoves();
-		if (allMoves.isEmpty()) {
-			return null;
-		}
-
-		List<EntityWithValue<Move>> allMoveValues = allMoves.stream()
-			.map(move -> new EntityValueTuple<>(move, board.getValue(move)))
-			.collect(Collectors.toList());
-
-		return RandomUtil.pickRandom(random, allMoveValues);
+		return board.randomMove(random);
 	}
 
 	public List<EntityWithValue<Position>> getAllPositions(Board board) {
@@ -311,7 +539,7 @@ public class MonteCarloChessEngine implements ChessEngine {
 			long startMillis = System.currentTimeMillis();
 
 			moveStatistics.parallelStream().forEach(moveStatistic -> {
-				play(board, moveStatistic, moveCount);
+				play(board, moveStatistic, moveCount, CancellationToken.NONE);
 			});
 			
 			long endMillis = System.currentTimeMillis();
@@ -342,7 +570,7 @@ public class MonteCarloChessEngine implements ChessEngine {
 			long thinkStartMillis = System.currentTimeMillis();
 
 			for (MoveStatistic moveStatistic : moveStatistics) {
-				play(board, moveStatistic, moveCount);
+				play(board, moveStatistic, moveCount, CancellationToken.NONE);
 			}
 			
 			long thinkEndMillis = System.currentTimeMillis();
@@ -360,11 +588,15 @@ public class MonteCarloChessEngine implements ChessEngine {
 		return moveStatistics.get(0).move;
 	}
 
-	private void play(Board board, MoveStatistic moveStatistic, int moveCount) {
+	private void play(Board board, MoveStatistic moveStatistic, int moveCount, CancellationToken cancellationToken) {
 		Board localBoard = board.clone();
 		localBoard.move(moveStatistic.move);
 		
-		Side winningSide = playGame(localBoard, moveCount);
+		Side winningSide = playGame(localBoard, moveCount, cancellationToken);
+		if (cancellationToken.isCancelled()) {
+			// the game was not played to the end
+			return;
+		}
 
 		moveStatistic.playCount++;
 		if (winningSide == Side.White) {
@@ -375,6 +607,36 @@ public class MonteCarloChessEngine implements ChessEngine {
 		}
 	}
 
+	private boolean isBestMoveSeparated(List<MoveStatistic> moveStatistics, long remainingRounds) {
+		if (moveStatistics.size() < 2) {
+			return true;
+		}
+		
+		sortStatistics(moveStatistics);
+		MoveStatistic leader = moveStatistics.get(0);
+		if (leader.playCount < EARLY_STOP_MIN_PLAY_COUNT) {
+			return false;
+		}
+
+		double delta = EARLY_STOP_DELTA / moveStatistics.size();
+		double leaderLowerBound = leader.getValue() - leader.getConfidenceRadius(delta);
+		double leaderWorstValue = (leader.getValue() * leader.playCount - remainingRounds) / (leader.playCount + remainingRounds);
+		
+		// another move can still overtake if it is not statistically separated from the leader
+		// and could catch up by winning all remaining rounds (while the leader loses them)
+		for (int i = 1; i < moveStatistics.size(); i++) {
+			MoveStatistic other = moveStatistics.get(i);
+			double otherUpperBound = other.getValue() + other.getConfidenceRadius(delta);
+			double otherBestValue = (other.getValue() * other.playCount + remainingRounds) / (other.playCount + remainingRounds);
+			
+			if (otherUpperBound >= leaderLowerBound && otherBestValue >= leaderWorstValue) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+
 	private <MV extends EntityWithValue<Move>> List<MV> reduceStatistics(List<MV> moveStatistics, long thinkMilliseconds, long reductionMilliseconds, long averagePlayMillis) {
 		int currentSize = moveStatistics.size();
 		int optimumSize;
@@ -401,24 +663,54 @@ public class MonteCarloChessEngine implements ChessEngine {
 		});
 	}
 
-	private Side playGame(Board board, int moveCount) {
-		for (int i = 0; i < moveCount; i++) {
-			Move move = findBestMoveWithoutThinking(board);
-			if (move == null) {
-				return board.getSideToMove().otherSide();
+	private Side playGame(Board board, int moveCount, CancellationToken cancellationToken) {
+		PlayoutEvent event = new PlayoutEvent();
+		event.begin();
+		
+		int plies = 0;
+		Side winner = null;
+		boolean decided = false;
+		double rootMaterialBalance = PlayoutAdjudicator.getMaterialBalance(board);
+		while (plies < moveCount && !decided) {
+			if (cancellationToken.isCancelled()) {
+				return null;
+			}
+			PlayoutAdjudicator.Adjudication adjudication = playoutAdjudicator.adjudicate(board, rootMaterialBalance, plies);
+			if (adjudication != null) {
+				playoutAdjudicator.countSavedPlies(adjudication.getRule(), moveCount - plies);
+				winner = adjudication.getWinner();
+				decided = true;
+			} else {
+				Move move = findBestMoveWithoutThinking(board);
+				if (move == null) {
+					winner = board.getSideToMove().otherSide();
+					decided = true;
+				} else {
+					board.move(move);
+					plies++;
+				}
 			}
-			board.move(move);
 		}
 		
-		double value = board.getValue();
-		if (value > 0) {
-			return Side.White;
+		if (!decided) {
+			double value = evaluateLeaf(board, cancellationToken);
+			if (value > 0) {
+				winner = Side.White;
+			} else if (value < 0) {
+				winner = Side.Black;
+			}
 		}
-		if (value < 0) {
-			return Side.Black;
+		
+		playoutCount.increment();
+		playoutPlies.add(plies);
+		
+		if (event.shouldCommit()) {
+			event.plies = plies;
+			event.result = winner == null ? "Draw" : winner.name();
+			event.commit();
 		}
 		
-		return null;
+		return winner;
 	}
 
 	public static void main(String[] args) {
@@ -0,0 +1,144 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class PlayoutAdjudicator {
+
+	private static final double DEFAULT_MATERIAL_MARGIN = 10;
+	private static final int DEFAULT_MATERIAL_MARGIN_MIN_PLIES = 8;
+	private static final int DEFAULT_REPETITION_COUNT = 3;
+
+	public enum Rule {
+		InsufficientMaterial,
+		Tablebase,
+		Repetition,
+		FiftyMoves,
+		MaterialMargin
+	}
+
+	public static class Adjudication {
+		private final Rule rule;
+		private final Side winner;
+
+		public Adjudication(Rule rule, Side winner) {
+			this.rule = rule;
+			this.winner = winner;
+		}
+
+		public Rule getRule() {
+			return rule;
+		}
+
+		// null for a draw
+		public Side getWinner() {
+			return winner;
+		}
+	}
+
+	private final LongAdder[] adjudicatedCounts = createCounters();
+	private final LongAdder[] savedPlies = createCounters();
+
+	private double materialMargin = DEFAULT_MATERIAL_MARGIN;
+	private int materialMarginMinPlies = DEFAULT_MATERIAL_MARGIN_MIN_PLIES;
+	private int repetitionCount = DEFAULT_REPETITION_COUNT;
+	private EndgameTablebase endgameTablebase;
+
+	// material won or lost (in pawn units) since the start of the playout that is adjudicated as win, 0 disables the rule
+	public void setMaterialMargin(double materialMargin) {
+		this.materialMargin = materialMargin;
+	}
+
+	public double getMaterialMargin() {
+		return materialMargin;
+	}
+
+	// plies that are played before the material margin rule applies (so that hanging pieces can still be recaptured)
+	public void setMaterialMarginMinPlies(int materialMarginMinPlies) {
+		this.materialMarginMinPlies = materialMarginMinPlies;
+	}
+
+	public int getMaterialMarginMinPlies() {
+		return materialMarginMinPlies;
+	}
+
+	// number of occurrences of the same position that is adjudicated as draw, 0 disables the rule
+	public void setRepetitionCount(int repetitionCount) {
+		this.repetitionCount = repetitionCount;
+	}
+
+	// positions found in the endgame tables are adjudicated with the exact result, null disables the rule
+	public void setEndgameTablebase(EndgameTablebase endgameTablebase) {
+		this.endgameTablebase = endgameTablebase;
+	}
+
+	// The material margin is measured against the balance at the start of the playout (rootMaterialBalance),
+	// otherwise every playout of a position that is already won would end before the first move.
+	// Returns null if the playout continues.
+	public Adjudication adjudicate(Board board, double rootMaterialBalance, int plies) {
+		if (board.isInsufficientMaterial()) {
+			return new Adjudication(Rule.InsufficientMaterial, null);
+		}
+		if (endgameTablebase != null) {
+			int value = endgameTablebase.probe(board);
+			if (value != EndgameTablebase.UNKNOWN) {
+				return new Adjudication(Rule.Tablebase, endgameTablebase.getWinner(board, value));
+			}
+		}
+		if (board.isFiftyMoveRule()) {
+			return new Adjudication(Rule.FiftyMoves, null);
+		}
+		if (repetitionCount > 0 && board.getRepetitionCount() + 1 >= repetitionCount) {
+			return new Adjudication(Rule.Repetition, null);
+		}
+		if (materialMargin > 0 && plies >= materialMarginMinPlies) {
+			double materialGain = getMaterialBalance(board) - rootMaterialBalance;
+			if (Math.abs(materialGain) >= materialMargin) {
+				return new Adjudication(Rule.MaterialMargin, materialGain > 0 ? Side.White : Side.Black);
+			}
+		}
+		return null;
+	}
+
+	public void countSavedPlies(Rule rule, int plies) {
+		adjudicatedCounts[rule.ordinal()].increment();
+		savedPlies[rule.ordinal()].add(plies);
+	}
+
+	public long getAdjudicatedCount(Rule rule) {
+		return adjudicatedCounts[rule.ordinal()].sum();
+	}
+
+	public long getSavedPlies(Rule rule) {
+		return savedPlies[rule.ordinal()].sum();
+	}
+
+	// material of white minus material of black (in pawn units)
+	public static double getMaterialBalance(Board board) {
+		return board.getMaterialValue(Side.White) - board.getMaterialValue(Side.Black);
+	}
+
+	private static LongAdder[] createCounters() {
+		LongAdder[] counters = new LongAdder[Rule.values().length];
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] = new LongAdder();
+		}
+		return counters;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for (Rule rule : Rule.values()) {
+			if (result.length() > 0) {
+				result.append(", ");
+			}
+			result.append(rule);
+			result.append(" ");
+			result.append(getAdjudicatedCount(rule));
+			result.append(" games ");
+			result.append(getSavedPlies(rule));
+			result.append(" plies saved");
+		}
+		return result.toString();
+	}
+}
@@ -0,0 +1,93 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Measures how many playouts are needed until the best move of the Monte Carlo search stops changing,
+// comparing long playouts with static evaluation against shorter playouts with quiescence search.
+// A trial is stable once the best move has not changed for STABLE_ROUNDS rounds (one playout per move and round),
+// MAX_ROUNDS only stops trials that never settle - they are counted separately and not in the median.
+public class PlayoutConvergenceBenchmark {
+
+	private static final int STABLE_ROUNDS = 50;
+	private static final int MAX_ROUNDS = 2000;
+	private static final int TRIAL_COUNT = 10;
+
+	public static void main(String[] args) {
+		String fen = "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w";
+		if (args.length > 0) {
+			fen = args[0];
+		}
+
+		Board board = new Board();
+		board.setFenString(fen);
+		System.out.println("FEN " + board.toFenString());
+
+		runBenchmark(board, 200, false);
+		runBenchmark(board, 100, false);
+		runBenchmark(board, 100, true);
+		runBenchmark(board, 50, true);
+		runBenchmark(board, 20, true);
+		runBenchmark(board, 10, true);
+	}
+
+	private static void runBenchmark(Board board, int moveCount, boolean quiescenceSearch) {
+		MonteCarloChessEngine chessEngine = new MonteCarloChessEngine();
+		chessEngine.setQuiescenceSearch(quiescenceSearch);
+
+		List<Move> allMoves = board.getAllMoves();
+
+		List<Long> stablePlayouts = new ArrayList<>();
+		long startMillis = System.currentTimeMillis();
+		for (int trial = 0; trial < TRIAL_COUNT; trial++) {
+			int stableRound = runTrial(chessEngine, board, allMoves, moveCount);
+			if (stableRound > 0) {
+				stablePlayouts.add((long) stableRound * allMoves.size());
+			}
+		}
+		long endMillis = System.currentTimeMillis();
+		Collections.sort(stablePlayouts);
+
+		long averageMillis = (endMillis - startMillis) / TRIAL_COUNT;
+		int unstableCount = TRIAL_COUNT - stablePlayouts.size();
+		if (stablePlayouts.isEmpty()) {
+			System.out.printf("moveCount %3d quiescence %-5s : never stable, %6d ms per trial (%d trials)\n", moveCount, quiescenceSearch, averageMillis, TRIAL_COUNT);
+			return;
+		}
+		long medianPlayouts = stablePlayouts.get(stablePlayouts.size() / 2);
+		long minPlayouts = stablePlayouts.get(0);
+		long maxPlayouts = stablePlayouts.get(stablePlayouts.size() - 1);
+		System.out.printf("moveCount %3d quiescence %-5s : stable after %6d playouts (min %6d, max %6d), %2d of %d trials never stable, %6d ms per trial\n", moveCount, quiescenceSearch, medianPlayouts, minPlayouts, maxPlayouts, unstableCount, TRIAL_COUNT, averageMillis);
+	}
+
+	// returns the round after which the best move did not change for STABLE_ROUNDS rounds, or 0 if that did not happen within MAX_ROUNDS
+	private static int runTrial(MonteCarloChessEngine chessEngine, Board board, List<Move> allMoves, int moveCount) {
+		double[] totalValues = new double[allMoves.size()];
+		int bestIndex = -1;
+		int stableRound = 0;
+
+		for (int round = 1; round <= MAX_ROUNDS; round++) {
+			for (int i = 0; i < allMoves.size(); i++) {
+				Board moveBoard = board.clone();
+				moveBoard.move(allMoves.get(i));
+				totalValues[i] += chessEngine.evaluatePlaying(moveBoard, 1, moveCount);
+			}
+
+			int roundBestIndex = 0;
+			for (int i = 1; i < totalValues.length; i++) {
+				if (totalValues[i] > totalValues[roundBestIndex]) {
+					roundBestIndex = i;
+				}
+			}
+			if (roundBestIndex != bestIndex) {
+				bestIndex = roundBestIndex;
+				stableRound = round;
+			} else if (round - stableRound >= STABLE_ROUNDS) {
+				return stableRound;
+			}
+		}
+
+		return 0;
+	}
+}
@@ -0,0 +1,25 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+// high frequency event - disabled by default, enable it in the recording settings (optionally with a threshold)
+@Name("ch.obermuhlner.genetic.chess.Playout")
+@Label("Playout")
+@Category({ "Genetic", "Chess Engine" })
+@Enabled(false)
+@Threshold("0 ms")
+@StackTrace(false)
+class PlayoutEvent extends Event {
+
+	@Label("Plies")
+	int plies;
+
+	@Label("Result")
+	String result;
+}
@@ -0,0 +1,143 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Fixed size hash indexed file of playout statistics per (position hash, move), memory-mapped so that opening the store does not read it.
+// Entries that do not find a free slot within the probe distance are dropped.
+public class PositionStatisticsStore implements Closeable {
+
+	private static final int ENTRY_SIZE = 24;
+	private static final int OFFSET_HASH = 0;
+	private static final int OFFSET_MOVE = 8;
+	private static final int OFFSET_PLAY_COUNT = 12;
+	private static final int OFFSET_WHITE_WINS = 16;
+	private static final int OFFSET_BLACK_WINS = 20;
+
+	private static final int MAX_PROBE_COUNT = 16;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer buffer;
+	private final int mask;
+
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "position-statistics-writer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public PositionStatisticsStore(File file, int sizeBits) throws IOException {
+		int size = 1 << sizeBits;
+		this.file = new RandomAccessFile(file, "rw");
+		this.buffer = this.file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, (long) size * ENTRY_SIZE);
+		this.mask = size - 1;
+	}
+
+	public int size() {
+		return mask + 1;
+	}
+
+	// returns the index of the entry for the position and move or -1 if the store has no entry for it
+	public synchronized int find(long hash, int move) {
+		int index = startIndex(hash, move);
+		for (int i = 0; i < MAX_PROBE_COUNT; i++) {
+			int offset = index * ENTRY_SIZE;
+			int entryPlayCount = buffer.getInt(offset + OFFSET_PLAY_COUNT);
+			if (entryPlayCount == 0) {
+				return -1;
+			}
+			if (buffer.getLong(offset + OFFSET_HASH) == hash && buffer.getInt(offset + OFFSET_MOVE) == move) {
+				return index;
+			}
+			index = (index + 1) & mask;
+		}
+		return -1;
+	}
+
+	public synchronized int getPlayCount(int index) {
+		return buffer.getInt(index * ENTRY_SIZE + OFFSET_PLAY_COUNT);
+	}
+
+	public synchronized int getWhiteWins(int index) {
+		return buffer.getInt(index * ENTRY_SIZE + OFFSET_WHITE_WINS);
+	}
+
+	public synchronized int getBlackWins(int index) {
+		return buffer.getInt(index * ENTRY_SIZE + OFFSET_BLACK_WINS);
+	}
+
+	public synchronized void add(long hash, int move, int playCount, int whiteWins, int blackWins) {
+		if (playCount <= 0) {
+			return;
+		}
+		
+		int index = startIndex(hash, move);
+		for (int i = 0; i < MAX_PROBE_COUNT; i++) {
+			int offset = index * ENTRY_SIZE;
+			int entryPlayCount = buffer.getInt(offset + OFFSET_PLAY_COUNT);
+			if (entryPlayCount == 0) {
+				buffer.putLong(offset + OFFSET_HASH, hash);
+				buffer.putInt(offset + OFFSET_MOVE, move);
+				buffer.putInt(offset + OFFSET_WHITE_WINS, whiteWins);
+				buffer.putInt(offset + OFFSET_BLACK_WINS, blackWins);
+				buffer.putInt(offset + OFFSET_PLAY_COUNT, playCount);
+				return;
+			}
+			if (buffer.getLong(offset + OFFSET_HASH) == hash && buffer.getInt(offset + OFFSET_MOVE) == move) {
+				if (entryPlayCount > Integer.MAX_VALUE - playCount) {
+					// saturated - keep the ratio but halve the counts
+					entryPlayCount /= 2;
+					buffer.putInt(offset + OFFSET_WHITE_WINS, buffer.getInt(offset + OFFSET_WHITE_WINS) / 2);
+					buffer.putInt(offset + OFFSET_BLACK_WINS, buffer.getInt(offset + OFFSET_BLACK_WINS) / 2);
+				}
+				buffer.putInt(offset + OFFSET_WHITE_WINS, buffer.getInt(offset + OFFSET_WHITE_WINS) + whiteWins);
+				buffer.putInt(offset + OFFSET_BLACK_WINS, buffer.getInt(offset + OFFSET_BLACK_WINS) + blackWins);
+				buffer.putInt(offset + OFFSET_PLAY_COUNT, entryPlayCount + playCount);
+				return;
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	public void addAsync(long hash, int move, int playCount, int whiteWins, int blackWins) {
+		writer.execute(() -> add(hash, move, playCount, whiteWins, blackWins));
+	}
+
+	// waits until all asynchronous updates are written into the mapped file
+	public void flush() {
+		try {
+			writer.submit(() -> {}).get();
+		} catch (Exception e) {
+			// ignore
+		}
+		synchronized (this) {
+			buffer.force();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.shutdown();
+		try {
+			writer.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			// ignore
+		}
+		synchronized (this) {
+			buffer.force();
+		}
+		file.close();
+	}
+
+	private int startIndex(long hash, int move) {
+		long key = hash ^ (move * 0x9E3779B97F4A7C15L);
+		return (int) (key ^ (key >>> 32)) & mask;
+	}
+}
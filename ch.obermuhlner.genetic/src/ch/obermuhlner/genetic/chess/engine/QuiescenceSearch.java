@@ -0,0 +1,102 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import java.util.List;
+
+public class QuiescenceSearch {
+
+	public static final int MATE_SCORE = 100000;
+
+	private static final int MAX_PLY = 32;
+	private static final int DELTA_MARGIN = 200;
+	private static final int MAX_CAPTURE_GAIN = (int) (Piece.Queen.getValue() * 100) * 2;
+
+	private final CancellationToken cancellationToken;
+
+	private long nodeCount;
+
+	public QuiescenceSearch() {
+		this(CancellationToken.NONE);
+	}
+
+	public QuiescenceSearch(CancellationToken cancellationToken) {
+		this.cancellationToken = cancellationToken;
+	}
+
+	public long getNodeCount() {
+		return nodeCount;
+	}
+
+	// value of the quiet position reached after resolving all captures (from the perspective of white, in pawn units)
+	public double evaluate(Board board) {
+		int score = search(board, -MATE_SCORE - 1, MATE_SCORE + 1, 0);
+		double value = score / 100.0;
+		return board.getSideToMove() == Side.White ? value : -value;
+	}
+
+	// score in centipawns from the perspective of the side to move
+	public int search(Board board, int alpha, int beta, int ply) {
+		nodeCount++;
+
+		List<Move> moves = board.getAllMoves();
+		if (moves.isEmpty()) {
+			return board.isCheck() ? -MATE_SCORE + ply : 0;
+		}
+
+		int standPat = evaluateStatic(board);
+		if (standPat >= beta || ply >= MAX_PLY || cancellationToken.isCancelled()) {
+			return standPat;
+		}
+		if (standPat + MAX_CAPTURE_GAIN < alpha) {
+			// even winning the queen (with promotion) cannot raise alpha
+			return alpha;
+		}
+		if (standPat > alpha) {
+			alpha = standPat;
+		}
+
+		sortCaptures(moves);
+		for (Move move : moves) {
+			Position kill = move.getKill();
+			if (kill == null) {
+				break;
+			}
+			if (kill.getPiece() == Piece.King) {
+				return MATE_SCORE - ply;
+			}
+			if (move.getConvert() == null && standPat + (int) (kill.getPiece().getValue() * 100) + DELTA_MARGIN <= alpha) {
+				// delta pruning - capture cannot raise alpha
+				continue;
+			}
+
+			Board childBoard = board.clone();
+			childBoard.move(move);
+			int score = -search(childBoard, -beta, -alpha, ply + 1);
+			if (score >= beta) {
+				return score;
+			}
+			if (score > alpha) {
+				alpha = score;
+			}
+		}
+
+		return alpha;
+	}
+
+	public static int evaluateStatic(Board board) {
+		int score = (int) (board.getValue() * 100);
+		return board.getSideToMove() == Side.White ? score : -score;
+	}
+
+	// captures first (most valuable victim, least valuable attacker), then all other moves
+	private static void sortCaptures(List<Move> moves) {
+		moves.sort((move1, move2) -> Integer.compare(captureOrder(move2), captureOrder(move1)));
+	}
+
+	private static int captureOrder(Move move) {
+		Position kill = move.getKill();
+		if (kill == null) {
+			return Integer.MIN_VALUE;
+		}
+		return (int) (kill.getPiece().getValue() * 100) * 10 - (int) (move.getSource().getPiece().getValue() * 10);
+	}
+}
@@ -37,5 +37,27 @@ public class RandomUtil {
 		return allEntitiesWithValue.iterator().next().getEntity();
 	}
 
-
+	// single pick from the first count weights without allocation, negative weights are shifted like in pickRandom()
+	public static int pickRandomIndex(Random random, double[] weights, int count) {
+		double min = 0;
+		double total = 0;
+		for (int i = 0; i < count; i++) {
+			min = Math.min(min, weights[i]);
+			total += weights[i];
+		}
+		total -= min * count;
+		if (total <= 0) {
+			return random.nextInt(count);
+		}
+		
+		double r = random.nextDouble() * total;
+		double cumulative = 0;
+		for (int i = 0; i < count; i++) {
+			cumulative += weights[i] - min;
+			if (r < cumulative) {
+				return i;
+			}
+		}
+		return count - 1;
+	}
 }
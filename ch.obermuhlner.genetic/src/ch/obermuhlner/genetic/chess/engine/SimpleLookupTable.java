@@ -1,8 +1,14 @@
 package ch.obermuhlner.genetic.chess.engine;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -17,59 +23,122 @@ public class SimpleLookupTable implements LookupTable {
 
 	private final Map<String, Set<EntityValueTuple<String>>> fenToRecommendedMoves = new ConcurrentHashMap<>();
 
+	private static final int CACHE_MAGIC = 0x4f504e31; // "OPN1"
+
 	private final Random random = new Random();
 	
-	private List<String> lastMoves = new ArrayList<>();
-	
 	public SimpleLookupTable() {
 	}
 	
 	public void load(File file) {
 		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-			String line = reader.readLine();
-			while (line != null) {
-				if (!line.isEmpty() && !line.startsWith("#")) {
-					parseLine(line);
-				}
-				
-				line = reader.readLine();
-			}
+			load(reader);
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
-	
-	private void parseLine(String line) {
-		String[] moves = line.split("\\s+");
+
+	// loads from the binary cache file if it is newer than the openings file, otherwise parses the openings file and writes the cache
+	public void load(File file, File cacheFile) {
+		if (cacheFile.exists() && cacheFile.lastModified() >= file.lastModified()) {
+			try {
+				loadCache(cacheFile);
+				return;
+			} catch (IOException e) {
+				e.printStackTrace();
+				fenToRecommendedMoves.clear();
+			}
+		}
+		
+		load(file);
 		
-		Board board = new Board();
-		board.setStartPosition();
-		for (int i = 0; i < moves.length; i++) {
-			String move = moves[i];
+		try {
+			saveCache(cacheFile);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
 
-			if (move.equals("#")) {
-				break;
+	// Every line adds one move after the moves of the previous lines replaced by '.' - the lines form a trie.
+	// The boards along the current path are kept by depth, so every move is applied only once.
+	private void load(BufferedReader reader) throws IOException {
+		List<Board> boards = new ArrayList<>();
+		List<String> fens = new ArrayList<>();
+		Board startBoard = new Board();
+		startBoard.setStartPosition();
+		boards.add(startBoard);
+		fens.add(startBoard.toFenPositionString());
+		
+		String line = reader.readLine();
+		while (line != null) {
+			if (!line.isEmpty() && !line.startsWith("#")) {
+				String[] moves = line.trim().split("\\s+");
+				
+				int depth = 0;
+				while (depth < moves.length && moves[depth].equals(".")) {
+					depth++;
+				}
+				
+				if (depth < moves.length && depth < boards.size() && !moves[depth].equals("#")) {
+					String move = moves[depth];
+					double probability = 1;
+					if (moves.length > depth + 1 && !moves[depth + 1].equals("#")) {
+						probability = Double.parseDouble(moves[depth + 1]);
+					}
+					
+					Set<EntityValueTuple<String>> recommendedMoves = fenToRecommendedMoves.computeIfAbsent(fens.get(depth), (key) -> new HashSet<>());
+					recommendedMoves.add(new EntityValueTuple<>(move, probability));
+					
+					Board board = boards.get(depth).clone();
+					board.move(move);
+					
+					// replace the deeper part of the path
+					while (boards.size() > depth + 1) {
+						boards.remove(boards.size() - 1);
+						fens.remove(fens.size() - 1);
+					}
+					boards.add(board);
+					fens.add(board.toFenPositionString());
+				}
 			}
 			
-			if (move.equals(".")) {
-				move = lastMoves.get(i);
-				board.move(move);
-			} else {
-				lastMoves = new ArrayList<>(lastMoves.subList(0, i));
-				lastMoves.add(move);
-				double probability = 1;
-				if (moves.length > i + 1) {
-					probability = Double.parseDouble(moves[++i]);
+			line = reader.readLine();
+		}
+	}
+
+	private void saveCache(File cacheFile) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)))) {
+			out.writeInt(CACHE_MAGIC);
+			out.writeInt(fenToRecommendedMoves.size());
+			for (Map.Entry<String, Set<EntityValueTuple<String>>> entry : fenToRecommendedMoves.entrySet()) {
+				out.writeUTF(entry.getKey());
+				out.writeShort(entry.getValue().size());
+				for (EntityValueTuple<String> recommendedMove : entry.getValue()) {
+					out.writeUTF(recommendedMove.getEntity());
+					out.writeDouble(recommendedMove.getValue());
 				}
-				
-				String fen = board.toFenPositionString();
-				
-				Set<EntityValueTuple<String>> recommendedMoves = fenToRecommendedMoves.computeIfAbsent(fen, (key) -> new HashSet<>());
-				recommendedMoves.add(new EntityValueTuple<>(move, probability));
-				board.move(move);
-				break;
+			}
+		}
+	}
+
+	private void loadCache(File cacheFile) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+			if (in.readInt() != CACHE_MAGIC) {
+				throw new IOException("Not an openings cache file: " + cacheFile);
+			}
+			int fenCount = in.readInt();
+			for (int i = 0; i < fenCount; i++) {
+				String fen = in.readUTF();
+				int moveCount = in.readUnsignedShort();
+				Set<EntityValueTuple<String>> recommendedMoves = new HashSet<>();
+				for (int j = 0; j < moveCount; j++) {
+					String move = in.readUTF();
+					double probability = in.readDouble();
+					recommendedMoves.add(new EntityValueTuple<>(move, probability));
+				}
+				fenToRecommendedMoves.put(fen, recommendedMoves);
 			}
 		}
 	}
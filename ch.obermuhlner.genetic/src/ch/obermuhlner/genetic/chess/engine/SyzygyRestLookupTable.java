@@ -4,9 +4,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.ProtocolException;
 import java.net.URL;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -16,10 +15,30 @@ public class SyzygyRestLookupTable implements LookupTable {
 
 	private static final Pattern BEST_MOVE_PATTERN = Pattern.compile("\"bestmove\"\\s*:\\s*\"([a-h1-8nbrq]+)\""); 
 	
+	private static final String DEFAULT_URL = "http://syzygy-tables.info/api/v2";
+	private static final int DEFAULT_TIMEOUT_MILLIS = 2000;
+	private static final int MAX_PIECE_COUNT = 7;
+	
+	private final String url;
+	private final int timeoutMillis;
+	
+	public SyzygyRestLookupTable() {
+		this(DEFAULT_URL, DEFAULT_TIMEOUT_MILLIS);
+	}
+	
+	public SyzygyRestLookupTable(String url, int timeoutMillis) {
+		this.url = url;
+		this.timeoutMillis = timeoutMillis;
+	}
+	
 	@Override
 	public String bestMove(Board board, InfoLogger infoLogger) {
+		if (board.getPositions().size() > MAX_PIECE_COUNT) {
+			return null;
+		}
+		
 		String fen = board.toFenString();
-		String json = getHttp(escapeUrl("http://syzygy-tables.info/api/v2?fen=" + fen));
+		String json = getHttp(escapeUrl(url + "?fen=" + fen));
 		if (json == null) {
 			return null;
 		}
@@ -30,11 +49,14 @@ public class SyzygyRestLookupTable implements LookupTable {
 		return bestMove;
 	}
 
+	// a failed request throws, so that it is not mistaken for a position without a move
 	private String getHttp(String url) {
 		try {
 			StringBuilder result = new StringBuilder();
 			HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
 			conn.setRequestMethod("GET");
+			conn.setConnectTimeout(timeoutMillis);
+			conn.setReadTimeout(timeoutMillis);
 			try (BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream()))) {
 				String line;
 				while ((line = reader.readLine()) != null) {
@@ -42,14 +64,9 @@ public class SyzygyRestLookupTable implements LookupTable {
 				}
 			}
 			return result.toString();
-		} catch (ProtocolException e) {
-			// ignore
-		} catch (MalformedURLException e) {
-			// ignore
 		} catch (IOException e) {
-			// ignore
+			throw new UncheckedIOException(e);
 		}
-		return null;
 	}
 
 	private static String escapeUrl(String string) {
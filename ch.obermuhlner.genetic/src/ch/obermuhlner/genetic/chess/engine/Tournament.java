@@ -0,0 +1,590 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Plays games between two engines in the same JVM, several games at the same time.
+// Every opening is played twice with swapped colors. The match stops early as soon as
+// the sequential probability ratio test (SPRT) accepts one of the hypotheses elo0 or elo1.
+public class Tournament {
+
+	private static final int MOVES_TO_GO = 40;
+
+	private static final InfoLogger NO_LOGGER = message -> {};
+
+	public static class Opening {
+		private final String fen;
+		private final List<String> moves;
+
+		// fen null means the start position
+		public Opening(String fen, List<String> moves) {
+			this.fen = fen;
+			this.moves = moves;
+		}
+
+		public Board createBoard() {
+			Board board = new Board();
+			if (fen == null) {
+				board.setStartPosition();
+			} else {
+				board.setFenString(fen);
+			}
+			for (String move : moves) {
+				board.move(move);
+			}
+			return board;
+		}
+
+		public void setup(ChessEngine chessEngine) {
+			if (fen == null) {
+				chessEngine.setStartPosition();
+			} else {
+				chessEngine.setFen(fen);
+			}
+			for (String move : moves) {
+				chessEngine.move(move);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return (fen == null ? "startpos" : fen) + (moves.isEmpty() ? "" : " moves " + String.join(" ", moves));
+		}
+	}
+
+	public static class Player {
+		private final String name;
+		private final Supplier<ChessEngine> chessEngineFactory;
+
+		private final LongAdder thinkingMilliseconds = new LongAdder();
+		private final LongAdder nodeCount = new LongAdder();
+		private final LongAdder playoutCount = new LongAdder();
+
+		public Player(String name, Supplier<ChessEngine> chessEngineFactory) {
+			this.name = name;
+			this.chessEngineFactory = chessEngineFactory;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getNodesPerSecond() {
+			return nodeCount.sum() * 1000 / Math.max(1, thinkingMilliseconds.sum());
+		}
+
+		public long getPlayoutsPerSecond() {
+			return playoutCount.sum() * 1000 / Math.max(1, thinkingMilliseconds.sum());
+		}
+
+		@Override
+		public String toString() {
+			return name + " nodes/s " + getNodesPerSecond() + " playouts/s " + getPlayoutsPerSecond();
+		}
+	}
+
+	// wins, draws and losses from the point of view of the first player
+	public static class Score {
+		private final int wins;
+		private final int draws;
+		private final int losses;
+
+		public Score(int wins, int draws, int losses) {
+			this.wins = wins;
+			this.draws = draws;
+			this.losses = losses;
+		}
+
+		public int getWins() {
+			return wins;
+		}
+
+		public int getDraws() {
+			return draws;
+		}
+
+		public int getLosses() {
+			return losses;
+		}
+
+		public int getGameCount() {
+			return wins + draws + losses;
+		}
+
+		public double getScore() {
+			return (wins + 0.5 * draws) / getGameCount();
+		}
+
+		public double getEloDifference() {
+			if (getGameCount() == 0) {
+				return 0;
+			}
+			return toElo(clampScore(getScore()));
+		}
+
+		// half width of the 95% confidence interval of the elo difference
+		public double getEloErrorMargin() {
+			if (getGameCount() == 0) {
+				return 0;
+			}
+			double score = clampScore(getScore());
+			double variance = getVariance();
+			if (variance == 0) {
+				// only wins, only losses or only draws - use the variance of the clamped score as a single win/loss result
+				variance = score * (1 - score);
+			}
+			double standardError = Math.sqrt(variance / getGameCount());
+			return (toElo(clampScore(score + 1.96 * standardError)) - toElo(clampScore(score - 1.96 * standardError))) / 2;
+		}
+
+		// a score of 0 or 1 has an infinite elo difference, so it is kept half a game away from them
+		private double clampScore(double score) {
+			double limit = 0.5 / getGameCount();
+			return Math.max(limit, Math.min(1 - limit, score));
+		}
+
+		// log likelihood ratio of elo1 against elo0, using the normal approximation of the game results
+		// (trinomial: every game is treated as independent, also the two games of the same opening)
+		public double getLogLikelihoodRatio(double elo0, double elo1) {
+			double variance = getVariance();
+			if (getGameCount() == 0 || variance == 0) {
+				return 0;
+			}
+			double score0 = toScore(elo0);
+			double score1 = toScore(elo1);
+			return getGameCount() * (score1 - score0) * (2 * getScore() - score0 - score1) / (2 * variance);
+		}
+
+		// variance of the result of a single game
+		private double getVariance() {
+			double score = getScore();
+			return (wins * (1 - score) * (1 - score) + draws * (0.5 - score) * (0.5 - score) + losses * score * score) / getGameCount();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d-%d-%d elo %.1f +/- %.1f", wins, draws, losses, getEloDifference(), getEloErrorMargin());
+		}
+	}
+
+	public static double toElo(double score) {
+		return -400 * Math.log10(1 / score - 1);
+	}
+
+	public static double toScore(double elo) {
+		return 1 / (1 + Math.pow(10, -elo / 400));
+	}
+
+	private final Player firstPlayer;
+	private final Player secondPlayer;
+	private final List<Opening> openings;
+
+	private int slots = 1;
+	private int maxGames = 1000;
+	private int maxPlies = 400;
+
+	private long baseMilliseconds = 10000;
+	private long incrementMilliseconds = 100;
+	private long moveMilliseconds = -1;
+
+	private double elo0 = 0;
+	private double elo1 = 10;
+	private double alpha = 0.05;
+	private double beta = 0.05;
+
+	private PrintStream out = System.out;
+
+	private int wins;
+	private int draws;
+	private int losses;
+	private String decision;
+
+	private final AtomicInteger nextGameIndex = new AtomicInteger();
+	private final Set<CancellationToken> runningSearches = ConcurrentHashMap.newKeySet();
+	private volatile boolean stopped;
+
+	public Tournament(Player firstPlayer, Player secondPlayer, List<Opening> openings) {
+		this.firstPlayer = firstPlayer;
+		this.secondPlayer = secondPlayer;
+		this.openings = openings;
+	}
+
+	// number of games played at the same time
+	public void setSlots(int slots) {
+		this.slots = slots;
+	}
+
+	public void setMaxGames(int maxGames) {
+		this.maxGames = maxGames;
+	}
+
+	// games that are not decided after this many plies are counted as draw
+	public void setMaxPlies(int maxPlies) {
+		this.maxPlies = maxPlies;
+	}
+
+	// every player has the base time for the game and gets the increment after every move
+	public void setTimeControl(long baseMilliseconds, long incrementMilliseconds) {
+		this.baseMilliseconds = baseMilliseconds;
+		this.incrementMilliseconds = incrementMilliseconds;
+		this.moveMilliseconds = -1;
+	}
+
+	// fixed thinking time for every move, there is no clock
+	public void setMoveTime(long moveMilliseconds) {
+		this.moveMilliseconds = moveMilliseconds;
+	}
+
+	public void setSprt(double elo0, double elo1, double alpha, double beta) {
+		this.elo0 = elo0;
+		this.elo1 = elo1;
+		this.alpha = alpha;
+		this.beta = beta;
+	}
+
+	public void setOutput(PrintStream out) {
+		this.out = out;
+	}
+
+	public synchronized Score getScore() {
+		return new Score(wins, draws, losses);
+	}
+
+	// "H0", "H1" or null if the SPRT has not accepted any hypothesis
+	public synchronized String getDecision() {
+		return decision;
+	}
+
+	public Score run() {
+		ExecutorService executor = Executors.newFixedThreadPool(slots, runnable -> {
+			Thread thread = new Thread(runnable, "game-slot");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		try {
+			List<Future<?>> slotFutures = new ArrayList<>();
+			for (int i = 0; i < slots; i++) {
+				slotFutures.add(executor.submit(this::runSlot));
+			}
+			for (Future<?> slotFuture : slotFutures) {
+				slotFuture.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			stop();
+		} catch (ExecutionException e) {
+			stop();
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+
+		Score score = getScore();
+		out.println("Result " + firstPlayer.getName() + " vs " + secondPlayer.getName() + " " + score + (getDecision() == null ? "" : " SPRT accepts " + getDecision()));
+		out.println("SPRT treats the games as independent, the correlation of the two games of an opening is ignored");
+		out.println(firstPlayer);
+		out.println(secondPlayer);
+		return score;
+	}
+
+	// cancels the running games, their results are not counted
+	public void stop() {
+		stopped = true;
+		for (CancellationToken cancellationToken : runningSearches) {
+			cancellationToken.cancel();
+		}
+	}
+
+	// every slot keeps its pair of engines for all the games it plays
+	private void runSlot() {
+		ChessEngine firstEngine = createChessEngine(firstPlayer);
+		ChessEngine secondEngine = createChessEngine(secondPlayer);
+		try {
+			int gameIndex = nextGameIndex.getAndIncrement();
+			while (!stopped && gameIndex < maxGames) {
+				Opening opening = openings.get((gameIndex / 2) % openings.size());
+				boolean firstIsWhite = gameIndex % 2 == 0;
+
+				Double whiteScore = firstIsWhite
+						? playGame(opening, firstPlayer, firstEngine, secondPlayer, secondEngine)
+						: playGame(opening, secondPlayer, secondEngine, firstPlayer, firstEngine);
+				if (whiteScore != null) {
+					addResult(gameIndex, opening, firstIsWhite ? whiteScore : 1 - whiteScore);
+				}
+
+				gameIndex = nextGameIndex.getAndIncrement();
+			}
+		} finally {
+			firstEngine.shutdown();
+			secondEngine.shutdown();
+		}
+	}
+
+	private static ChessEngine createChessEngine(Player player) {
+		ChessEngine chessEngine = player.chessEngineFactory.get();
+		chessEngine.setInfoLogger(NO_LOGGER);
+		return chessEngine;
+	}
+
+	// returns the score of white (1, 0.5 or 0) or null if the game was cancelled
+	private Double playGame(Opening opening, Player whitePlayer, ChessEngine whiteEngine, Player blackPlayer, ChessEngine blackEngine) {
+		Board board = opening.createBoard();
+		opening.setup(whiteEngine);
+		opening.setup(blackEngine);
+
+		long[] clocks = { baseMilliseconds, baseMilliseconds };
+		for (int ply = 0; ; ply++) {
+			if (board.isMate()) {
+				return board.getSideToMove() == Side.White ? 0.0 : 1.0;
+			}
+			if (ply >= maxPlies || board.isFinished() || board.getRepetitionCount() >= 2 || board.isFiftyMoveRule() || board.isInsufficientMaterial()) {
+				return 0.5;
+			}
+
+			boolean whiteToMove = board.getSideToMove() == Side.White;
+			int clockIndex = whiteToMove ? 0 : 1;
+			Player player = whiteToMove ? whitePlayer : blackPlayer;
+			ChessEngine chessEngine = whiteToMove ? whiteEngine : blackEngine;
+			double loss = whiteToMove ? 0.0 : 1.0;
+
+			String move = think(player, chessEngine, thinkingMilliseconds(clocks[clockIndex]), clocks, clockIndex);
+			if (stopped) {
+				return null;
+			}
+			if (moveMilliseconds < 0 && clocks[clockIndex] < 0) {
+				return loss;
+			}
+			clocks[clockIndex] += incrementMilliseconds;
+
+			Move legalMove = findLegalMove(board, move);
+			if (legalMove == null) {
+				return loss;
+			}
+			board.move(legalMove);
+			whiteEngine.move(move);
+			blackEngine.move(move);
+		}
+	}
+
+	private String think(Player player, ChessEngine chessEngine, long thinkingMilliseconds, long[] clocks, int clockIndex) {
+		CancellationToken cancellationToken = new CancellationToken();
+		runningSearches.add(cancellationToken);
+		if (stopped) {
+			cancellationToken.cancel();
+		}
+
+		long nodeCount = chessEngine.getNodeCount();
+		long playoutCount = chessEngine.getPlayoutCount();
+		long startMillis = System.currentTimeMillis();
+		try {
+			return chessEngine.bestMove(thinkingMilliseconds, cancellationToken).getFuture().join();
+		} catch (CompletionException e) {
+			return null;
+		} finally {
+			long elapsedMillis = System.currentTimeMillis() - startMillis;
+			runningSearches.remove(cancellationToken);
+			clocks[clockIndex] -= elapsedMillis;
+			player.thinkingMilliseconds.add(elapsedMillis);
+			player.nodeCount.add(chessEngine.getNodeCount() - nodeCount);
+			player.playoutCount.add(chessEngine.getPlayoutCount() - playoutCount);
+		}
+	}
+
+	private long thinkingMilliseconds(long remainingMilliseconds) {
+		if (moveMilliseconds >= 0) {
+			return moveMilliseconds;
+		}
+		long thinkingMilliseconds = remainingMilliseconds / MOVES_TO_GO + incrementMilliseconds * 3 / 4;
+		return Math.max(1, Math.min(thinkingMilliseconds, remainingMilliseconds / 2));
+	}
+
+	private static Move findLegalMove(Board board, String move) {
+		if (move == null) {
+			return null;
+		}
+		for (Move legalMove : board.getAllMoves()) {
+			if (legalMove.toUciString().equals(move)) {
+				return legalMove;
+			}
+		}
+		return null;
+	}
+
+	private synchronized void addResult(int gameIndex, Opening opening, double firstScore) {
+		if (decision != null) {
+			return;
+		}
+
+		if (firstScore == 1) {
+			wins++;
+		} else if (firstScore == 0) {
+			losses++;
+		} else {
+			draws++;
+		}
+
+		Score score = getScore();
+		double logLikelihoodRatio = score.getLogLikelihoodRatio(elo0, elo1);
+		double lowerBound = Math.log(beta / (1 - alpha));
+		double upperBound = Math.log((1 - beta) / alpha);
+		out.printf("Game %d (%s) %s llr %.2f (%.2f, %.2f)\n", gameIndex + 1, opening, score, logLikelihoodRatio, lowerBound, upperBound);
+
+		if (logLikelihoodRatio >= upperBound) {
+			decision = "H1";
+		} else if (logLikelihoodRatio <= lowerBound) {
+			decision = "H0";
+		}
+		if (decision != null) {
+			stop();
+		}
+	}
+
+	public static List<Opening> loadOpenings(File file, int plies) throws IOException {
+		try (Reader reader = new FileReader(file)) {
+			return loadOpenings(reader, plies);
+		}
+	}
+
+	// Reads FEN lines or the move trie of the openings file (see SimpleLookupTable).
+	// Every path of the trie with the specified number of plies is one opening.
+	public static List<Opening> loadOpenings(Reader reader, int plies) throws IOException {
+		List<Opening> openings = new ArrayList<>();
+		List<String> path = new ArrayList<>();
+
+		BufferedReader bufferedReader = new BufferedReader(reader);
+		String line = bufferedReader.readLine();
+		while (line != null) {
+			line = line.trim();
+			if (!line.isEmpty() && !line.startsWith("#")) {
+				if (line.contains("/")) {
+					openings.add(new Opening(line, Collections.emptyList()));
+				} else {
+					String[] moves = line.split("\\s+");
+					int depth = 0;
+					while (depth < moves.length && moves[depth].equals(".")) {
+						depth++;
+					}
+					if (depth < moves.length && depth < plies && depth <= path.size()) {
+						while (path.size() > depth) {
+							path.remove(path.size() - 1);
+						}
+						path.add(moves[depth]);
+						if (path.size() == plies) {
+							openings.add(new Opening(null, new ArrayList<>(path)));
+						}
+					}
+				}
+			}
+			line = bufferedReader.readLine();
+		}
+
+		return openings;
+	}
+
+	private static Supplier<ChessEngine> createChessEngineFactory(String engineName) {
+		switch (engineName) {
+		case "montecarlo":
+			return MonteCarloChessEngine::new;
+		case "montecarlo-quiescence":
+			return () -> {
+				MonteCarloChessEngine chessEngine = new MonteCarloChessEngine();
+				chessEngine.setQuiescenceSearch(true);
+				return chessEngine;
+			};
+		case "alphabeta":
+			return AlphaBetaChessEngine::new;
+		default:
+			throw new IllegalArgumentException("Unknown engine: " + engineName);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		String firstEngineName = "montecarlo";
+		String secondEngineName = "alphabeta";
+		String openingsFileName = "resources/openings.txt";
+		int openingPlies = 4;
+		int slots = Runtime.getRuntime().availableProcessors();
+		int maxGames = 1000;
+		int maxPlies = 400;
+		String timeControl = "10+0.1";
+		long moveMilliseconds = -1;
+		double[] sprt = { 0, 10, 0.05, 0.05 };
+
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "-engine1":
+				firstEngineName = args[++i];
+				break;
+			case "-engine2":
+				secondEngineName = args[++i];
+				break;
+			case "-openings":
+				openingsFileName = args[++i];
+				break;
+			case "-plies":
+				openingPlies = Integer.parseInt(args[++i]);
+				break;
+			case "-slots":
+				slots = Integer.parseInt(args[++i]);
+				break;
+			case "-games":
+				maxGames = Integer.parseInt(args[++i]);
+				break;
+			case "-maxplies":
+				maxPlies = Integer.parseInt(args[++i]);
+				break;
+			case "-tc":
+				timeControl = args[++i];
+				break;
+			case "-movetime":
+				moveMilliseconds = Long.parseLong(args[++i]);
+				break;
+			case "-sprt":
+				sprt = Arrays.stream(args[++i].split(",")).mapToDouble(Double::parseDouble).toArray();
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option: " + args[i]);
+			}
+		}
+
+		List<Opening> openings = loadOpenings(new File(openingsFileName), openingPlies);
+		Tournament tournament = new Tournament(
+				new Player(firstEngineName, createChessEngineFactory(firstEngineName)),
+				new Player(secondEngineName, createChessEngineFactory(secondEngineName)),
+				openings);
+		tournament.setSlots(slots);
+		tournament.setMaxGames(maxGames);
+		tournament.setMaxPlies(maxPlies);
+		// time control in seconds as base+increment, for example 10+0.1
+		String[] timeControlParts = timeControl.split("\\+");
+		tournament.setTimeControl(
+				(long) (Double.parseDouble(timeControlParts[0]) * 1000),
+				timeControlParts.length > 1 ? (long) (Double.parseDouble(timeControlParts[1]) * 1000) : 0);
+		if (moveMilliseconds >= 0) {
+			tournament.setMoveTime(moveMilliseconds);
+		}
+		tournament.setSprt(sprt[0], sprt[1], sprt[2], sprt[3]);
+
+		System.out.println("Openings " + openings.size() + " slots " + slots);
+		tournament.run();
+	}
+}
@@ -0,0 +1,80 @@
+package ch.obermuhlner.genetic.chess.engine;
+
+import java.util.Arrays;
+
+public class TranspositionTable {
+
+	public static final int BOUND_EXACT = 0;
+	public static final int BOUND_LOWER = 1;
+	public static final int BOUND_UPPER = 2;
+
+	private final long[] keys;
+	private final int[] scores;
+	private final int[] moves;
+	private final byte[] depths;
+	private final byte[] bounds;
+	private final int mask;
+
+	public TranspositionTable(int sizeBits) {
+		int size = 1 << sizeBits;
+		keys = new long[size];
+		scores = new int[size];
+		moves = new int[size];
+		depths = new byte[size];
+		bounds = new byte[size];
+		mask = size - 1;
+	}
+
+	public int size() {
+		return keys.length;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(moves, 0);
+	}
+
+	// returns the index of the entry for the hash or -1 if the table has no entry for it
+	public int find(long hash) {
+		int index = (int) hash & mask;
+		if (keys[index] == hash && hash != 0) {
+			return index;
+		}
+		return -1;
+	}
+
+	public int getScore(int index) {
+		return scores[index];
+	}
+
+	public int getMove(int index) {
+		return moves[index];
+	}
+
+	public int getDepth(int index) {
+		return depths[index];
+	}
+
+	public int getBound(int index) {
+		return bounds[index];
+	}
+
+	public void store(long hash, int depth, int score, int bound, int move) {
+		int index = (int) hash & mask;
+		if (keys[index] == hash) {
+			if (depths[index] > depth && bound != BOUND_EXACT) {
+				// keep the deeper result of the same position
+				return;
+			}
+			if (move == 0) {
+				move = moves[index];
+			}
+		}
+
+		keys[index] = hash;
+		depths[index] = (byte) depth;
+		scores[index] = score;
+		bounds[index] = (byte) bound;
+		moves[index] = move;
+	}
+}
@@ -0,0 +1,162 @@
+package ch.obermuhlner.genetic.chess.engine.uci;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+// Log of the protocol lines that never blocks the caller: lines go into a bounded ring buffer
+// and are written in batches by a background thread. Lines that do not fit into the buffer are dropped and counted.
+public class ProtocolLog implements Closeable {
+
+	public enum Level {
+		Off,
+		Error,
+		Protocol,
+		Info
+	}
+
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	private static final long FLUSH_INTERVAL_MILLIS = 200;
+
+	private final Writer writer;
+	private final Level level;
+
+	private final String[] buffer;
+	private int head;
+	private int count;
+	private long droppedCount;
+	private long reportedDroppedCount;
+	private boolean closed;
+
+	private final Thread writerThread;
+
+	// the file is not created if the level is Off
+	public ProtocolLog(File file, Level level) throws IOException {
+		this(level == Level.Off ? null : new FileWriter(file), level, DEFAULT_CAPACITY);
+	}
+
+	public ProtocolLog(Writer writer, Level level, int capacity) {
+		this.writer = writer;
+		this.level = level;
+		this.buffer = new String[capacity];
+
+		writerThread = new Thread(this::writeLoop, "protocol-log");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	public boolean isEnabled(Level lineLevel) {
+		return lineLevel != Level.Off && lineLevel.ordinal() <= level.ordinal();
+	}
+
+	public void log(Level lineLevel, String line) {
+		if (!isEnabled(lineLevel)) {
+			return;
+		}
+
+		synchronized (buffer) {
+			if (closed || count == buffer.length) {
+				droppedCount++;
+				return;
+			}
+			buffer[(head + count) % buffer.length] = line;
+			count++;
+			if (count == buffer.length / 2) {
+				buffer.notify();
+			}
+		}
+	}
+
+	public void log(Throwable exception) {
+		if (!isEnabled(Level.Error)) {
+			return;
+		}
+
+		StringWriter stackTrace = new StringWriter();
+		exception.printStackTrace(new PrintWriter(stackTrace));
+		log(Level.Error, stackTrace.toString());
+	}
+
+	public long getDroppedCount() {
+		synchronized (buffer) {
+			return droppedCount;
+		}
+	}
+
+	// writes the remaining lines and closes the file
+	@Override
+	public void close() {
+		synchronized (buffer) {
+			closed = true;
+			buffer.notify();
+		}
+		try {
+			writerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void writeLoop() {
+		List<String> batch = new ArrayList<>();
+		boolean running = true;
+		while (running) {
+			long dropped;
+			synchronized (buffer) {
+				if (count < buffer.length / 2 && !closed) {
+					try {
+						buffer.wait(FLUSH_INTERVAL_MILLIS);
+					} catch (InterruptedException e) {
+						closed = true;
+					}
+				}
+				while (count > 0) {
+					batch.add(buffer[head]);
+					buffer[head] = null;
+					head = (head + 1) % buffer.length;
+					count--;
+				}
+				dropped = droppedCount - reportedDroppedCount;
+				reportedDroppedCount = droppedCount;
+				running = !closed;
+			}
+
+			write(batch, dropped);
+			batch.clear();
+		}
+
+		try {
+			if (writer != null) {
+				writer.close();
+			}
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+
+	private void write(List<String> batch, long dropped) {
+		if (writer == null || batch.isEmpty() && dropped == 0) {
+			return;
+		}
+
+		try {
+			for (String line : batch) {
+				writer.write(line);
+				writer.write(System.lineSeparator());
+			}
+			if (dropped > 0) {
+				writer.write("DROPPED " + dropped + " lines" + System.lineSeparator());
+			}
+			writer.flush();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package ch.obermuhlner.genetic.chess.engine.uci;
+
+public class TimeManager {
+
+	private static final long DEFAULT_MOVE_TIME = 5000;
+	private static final int DEFAULT_MOVES_TO_GO = 40;
+
+	private long savedMilliseconds;
+
+	public void reset() {
+		savedMilliseconds = 0;
+	}
+
+	public void addSavedTime(long milliseconds) {
+		savedMilliseconds += milliseconds;
+	}
+
+	public long getSavedTime() {
+		return savedMilliseconds;
+	}
+
+	public long calculateThinkingTime(String[] args, boolean whiteToMove) {
+		long whiteTime = -1;
+		long blackTime = -1;
+		long moveTime = -1;
+		int movesToGo = -1;
+
+		for (int i = 1; i < args.length; i++) {
+			switch (args[i]) {
+			case "wtime":
+				whiteTime = Long.parseLong(args[++i]);
+				break;
+			case "btime":
+				blackTime = Long.parseLong(args[++i]);
+				break;
+			case "movestogo":
+				movesToGo = Integer.parseInt(args[++i]);
+				break;
+			case "movetime":
+				moveTime = Long.parseLong(args[++i]);
+				break;
+			case "depth":
+				moveTime = Integer.parseInt(args[++i]) * 100;
+				break;
+			case "infinity":
+				moveTime = Integer.MAX_VALUE;
+				break;
+			}
+		}
+
+		if (moveTime >= 0) {
+			return moveTime;
+		}
+
+		if (whiteTime >= 0 && blackTime >= 0) {
+			long remainingTime = whiteToMove ? whiteTime : blackTime;
+			if (movesToGo < 0) {
+				movesToGo = DEFAULT_MOVES_TO_GO;
+			}
+			moveTime = (int) ((remainingTime / 2.0) / (movesToGo / 4.0));
+
+			// spend the time saved by earlier moves, but never more than doubling the normal move time
+			long bonusTime = Math.min(savedMilliseconds, Math.min(moveTime, remainingTime / 4 - moveTime));
+			if (bonusTime > 0) {
+				savedMilliseconds -= bonusTime;
+				moveTime += bonusTime;
+			}
+			return moveTime;
+		}
+
+		return DEFAULT_MOVE_TIME;
+	}
+}
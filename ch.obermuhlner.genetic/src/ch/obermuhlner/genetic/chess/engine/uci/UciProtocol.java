@@ -2,88 +2,124 @@ package ch.obermuhlner.genetic.chess.engine.uci;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
+import ch.obermuhlner.genetic.chess.engine.AlphaBetaChessEngine;
+import ch.obermuhlner.genetic.chess.engine.AsyncLookupTable;
+import ch.obermuhlner.genetic.chess.engine.Bench;
+import ch.obermuhlner.genetic.chess.engine.Board;
+import ch.obermuhlner.genetic.chess.engine.CancellationToken;
 import ch.obermuhlner.genetic.chess.engine.ChessEngine;
 import ch.obermuhlner.genetic.chess.engine.CompositeLookupTable;
+import ch.obermuhlner.genetic.chess.engine.EndgameTable;
+import ch.obermuhlner.genetic.chess.engine.EndgameTableGenerator;
+import ch.obermuhlner.genetic.chess.engine.EndgameTablebase;
+import ch.obermuhlner.genetic.chess.engine.FairWorkerPool;
 import ch.obermuhlner.genetic.chess.engine.ChessEngine.CalculationState;
 import ch.obermuhlner.genetic.chess.engine.InfoLogger;
 import ch.obermuhlner.genetic.chess.engine.LookupTable;
 import ch.obermuhlner.genetic.chess.engine.MonteCarloChessEngine;
+import ch.obermuhlner.genetic.chess.engine.Move;
+import ch.obermuhlner.genetic.chess.engine.PolyglotLookupTable;
+import ch.obermuhlner.genetic.chess.engine.PositionStatisticsStore;
 import ch.obermuhlner.genetic.chess.engine.SimpleLookupTable;
 import ch.obermuhlner.genetic.chess.engine.SyzygyRestLookupTable;
 
 public class UciProtocol implements InfoLogger {
 
+	private static final int DEFAULT_HASH_MEGABYTES = 32;
+	private static final int MAX_HASH_MEGABYTES = 1024;
+	private static final int MAX_THREADS = 64;
+	private static final int MIN_PLAYOUT_LENGTH = 10;
+	private static final int MAX_PLAYOUT_LENGTH = 1000;
+
 	private final BufferedReader in;
 	private final PrintWriter out;
-	private PrintWriter log;
+	private final ProtocolLog log;
 	private final ChessEngine chessEngine;
+	private final TimeManager timeManager = new TimeManager();
 
-	private volatile boolean stop;
+	private volatile CancellationToken cancellationToken;
+	private boolean quit;
 	
-	public UciProtocol(ChessEngine chessEngine) {
-		this(System.in, System.out, chessEngine);
-		chessEngine.setInfoLogger(this);
+	private LookupTable bookLookup = new LookupTable() {
+	};
+	private LookupTable remoteEndgameLookup = new LookupTable() {
+	};
+	private EndgameTablebase endgameTablebase;
+	private File tablebaseDirectory;
+	private boolean ownBook = true;
+	
+	// setup and moves of the last position command, a command that only appends moves is applied incrementally
+	private String lastPositionSetup;
+	private List<String> lastPositionMoves = new ArrayList<>();
+	
+	public UciProtocol(ChessEngine chessEngine, ProtocolLog log) {
+		this(System.in, System.out, chessEngine, log);
 	}
 	
-	public UciProtocol(InputStream inputStream, OutputStream outputStream, ChessEngine chessEngine) {
+	public UciProtocol(InputStream inputStream, OutputStream outputStream, ChessEngine chessEngine, ProtocolLog log) {
 		in = new BufferedReader(new InputStreamReader(inputStream));
 		out = new PrintWriter(outputStream, true);
 		
-		try {
-			log = new PrintWriter(new FileWriter("guppy_log.txt"));
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-		
+		this.log = log;
 		this.chessEngine = chessEngine;
+		chessEngine.setInfoLogger(this);
 	}
 	
+	// returns when the input ends or after the quit command
 	public void run() {
 		try {
 			String line = in.readLine();
-			while (line != null) {
-				if (line.isEmpty()) {
-					continue;
-				}
-				if (log != null) {
-					log.println("IN  " + line);
-					log.flush();
-				}
-				
-				String[] args = line.split(" +");
-				if (args.length > 0) {
-					try {
-						execute(args);
-					} catch(Exception ex) {
-						if (log != null) {
-							ex.printStackTrace(log);
+			while (line != null && !quit) {
+				if (!line.isEmpty()) {
+					log.log(ProtocolLog.Level.Protocol, "IN  " + line);
+					
+					String[] args = line.split(" +");
+					if (args.length > 0) {
+						try {
+							execute(args);
+						} catch(Exception ex) {
+							log.log(ex);
 						}
 					}
 				}
 				
-				line = in.readLine();
+				if (!quit) {
+					line = in.readLine();
+				}
 			}
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
+	
+	// stops a running search and releases the engine and the log
+	public void close() {
+		if (cancellationToken != null) {
+			cancellationToken.cancel();
+		}
+		chessEngine.shutdown();
+		log.close();
+	}
 
 	private void execute(String[] args) {
 		switch(args[0]) {
 		case "quit":
-			System.exit(0);
+			quit = true;
 			break;
 		case "stop":
 			System.out.println("Stopping");
-			stop = true;
+			if (cancellationToken != null) {
+				cancellationToken.cancel();
+			}
 			break;
 		case "uci":
 			executeUci(args);
@@ -94,6 +130,9 @@ public class UciProtocol implements InfoLogger {
 		case "isready":
 			executeIsready(args);
 			break;
+		case "setoption":
+			executeSetoption(args);
+			break;
 		case "position":
 			executePosition(args);
 			break;
@@ -104,6 +143,9 @@ public class UciProtocol implements InfoLogger {
 		case "diagram":
 			executeDiagram(args);
 			break;
+		case "bench":
+			executeBench(args);
+			break;
 		default:
 			println("Unknown command: " + Arrays.toString(args));
 		}
@@ -112,11 +154,118 @@ public class UciProtocol implements InfoLogger {
 	private void executeUci(String[] args) {
 		println("id name guppy 0.1");
 		println("id author Eric Obermuhlner");
+		
+		// only the options that the selected engine honors
+		if (chessEngine instanceof MonteCarloChessEngine) {
+			MonteCarloChessEngine monteCarloChessEngine = (MonteCarloChessEngine) chessEngine;
+			println("option name Threads type spin default " + monteCarloChessEngine.getThreads() + " min 1 max " + MAX_THREADS);
+			println("option name PlayoutLength type spin default " + monteCarloChessEngine.getPlayoutLength() + " min " + MIN_PLAYOUT_LENGTH + " max " + MAX_PLAYOUT_LENGTH);
+		}
+		if (chessEngine instanceof AlphaBetaChessEngine) {
+			println("option name Hash type spin default " + DEFAULT_HASH_MEGABYTES + " min 1 max " + MAX_HASH_MEGABYTES);
+		}
+		println("option name OwnBook type check default " + ownBook);
+		println("option name TablebasePath type string default " + (tablebaseDirectory == null ? "<empty>" : tablebaseDirectory.getPath()));
 		println("uciok");
 	}
 
+	// setoption name <id> [value <x>] - the name and the value may contain spaces
+	private void executeSetoption(String[] args) {
+		StringBuilder name = new StringBuilder();
+		StringBuilder value = new StringBuilder();
+		StringBuilder current = null;
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("name") && current == null) {
+				current = name;
+			} else if (args[i].equals("value") && current == name) {
+				current = value;
+			} else if (current != null) {
+				if (current.length() > 0) {
+					current.append(" ");
+				}
+				current.append(args[i]);
+			}
+		}
+		
+		setOption(name.toString(), value.toString());
+	}
+	
+	public void setOption(String name, String value) {
+		switch (name.toLowerCase()) {
+		case "threads":
+			if (chessEngine instanceof MonteCarloChessEngine) {
+				((MonteCarloChessEngine) chessEngine).setThreads(parseSpin(value, 1, MAX_THREADS));
+			}
+			break;
+		case "hash":
+			if (chessEngine instanceof AlphaBetaChessEngine) {
+				((AlphaBetaChessEngine) chessEngine).setHashSizeMegabytes(parseSpin(value, 1, MAX_HASH_MEGABYTES));
+			}
+			break;
+		case "playoutlength":
+			if (chessEngine instanceof MonteCarloChessEngine) {
+				((MonteCarloChessEngine) chessEngine).setPlayoutLength(parseSpin(value, MIN_PLAYOUT_LENGTH, MAX_PLAYOUT_LENGTH));
+			}
+			break;
+		case "ownbook":
+			ownBook = Boolean.parseBoolean(value);
+			updateLookupTable();
+			break;
+		case "tablebasepath":
+			if (value.isEmpty() || value.equals("<empty>")) {
+				setEndgameTablebase(null, null);
+			} else {
+				File directory = new File(value);
+				if (EndgameTablebase.containsSyzygyTables(directory)) {
+					println("info string Syzygy tables are not supported, only .egt tables generated with -generate (up to " + EndgameTable.MAX_PIECE_COUNT + " pieces) are used");
+				}
+				setEndgameTablebase(directory, new EndgameTablebase(directory));
+			}
+			updateLookupTable();
+			break;
+		default:
+			println("Unknown option: " + name);
+		}
+	}
+	
+	private static int parseSpin(String value, int min, int max) {
+		return Math.max(min, Math.min(max, Integer.parseInt(value)));
+	}
+	
+	public void setBookLookup(LookupTable bookLookup) {
+		this.bookLookup = bookLookup;
+	}
+	
+	public void setRemoteEndgameLookup(LookupTable remoteEndgameLookup) {
+		this.remoteEndgameLookup = remoteEndgameLookup;
+	}
+	
+	public void setEndgameTablebase(File tablebaseDirectory, EndgameTablebase endgameTablebase) {
+		this.tablebaseDirectory = tablebaseDirectory;
+		this.endgameTablebase = endgameTablebase;
+	}
+	
+	// book (if enabled) before the endgame lookups, the local tablebase before the remote one
+	public void updateLookupTable() {
+		LookupTable endgameLookup = remoteEndgameLookup;
+		if (endgameTablebase != null) {
+			CompositeLookupTable tablebaseLookup = new CompositeLookupTable(endgameTablebase, remoteEndgameLookup);
+			tablebaseLookup.setParallel(true);
+			endgameLookup = tablebaseLookup;
+		}
+		
+		CompositeLookupTable lookupTable = ownBook ? new CompositeLookupTable(bookLookup, endgameLookup) : new CompositeLookupTable(endgameLookup);
+		lookupTable.setParallel(true);
+		chessEngine.setLookupTable(lookupTable);
+		
+		if (chessEngine instanceof MonteCarloChessEngine) {
+			((MonteCarloChessEngine) chessEngine).getPlayoutAdjudicator().setEndgameTablebase(endgameTablebase);
+		}
+	}
+
 	private void executeUcinewgame(String[] args) {
-		// does nothing
+		timeManager.reset();
+		lastPositionSetup = null;
 	}
 	
 	private void executeIsready(String[] args) {
@@ -143,99 +292,79 @@ public class UciProtocol implements InfoLogger {
 		println("Fen: " + chessEngine.getFen());
 	}
 
-	private void executeGo(String[] args) {
-		long thinkingMilliseconds = calculateThinkingTime(args);
+	// bench [<budget> [<seed>]] - searches the built-in positions before returning, afterwards the engine is in the start position
+	private void executeBench(String[] args) {
+		long budget = args.length > 1 ? Long.parseLong(args[1]) : Bench.DEFAULT_BUDGET;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : Bench.DEFAULT_SEED;
 		
-		if (thinkingMilliseconds == 0) {
-			try {
-				Thread.sleep(500);
-			} catch (InterruptedException e) {
-				// ignore
-			}
-		}
+		Bench.Result result = Bench.run(chessEngine, budget, seed, this);
+		println("info string bench " + result);
 		
-		stop = false;
-		CalculationState<String> calculateBestMove = chessEngine.bestMove(thinkingMilliseconds);
-		new Thread(() -> {
-			while (!calculateBestMove.isFinished() && !stop) {
-				try {
-					Thread.sleep(500);
-				} catch (InterruptedException e) {
-					// ignore
-				}
-			}
-			String bestMove = calculateBestMove.getResult();
-			println("bestmove " + bestMove);
-		}).start();
+		chessEngine.setStartPosition();
+		lastPositionSetup = null;
 	}
 
-	private long calculateThinkingTime(String[] args) {
-		long whiteTime = -1;
-		long blackTime = -1;
-		long moveTime = -1;
-		int movesToGo = -1;
+	private void executeGo(String[] args) {
+		long thinkingMilliseconds = timeManager.calculateThinkingTime(args, chessEngine.isWhiteToMove());
 		
-		for (int i = 1; i < args.length; i++) {
-			switch (args[i]) {
-			case "wtime":
-				whiteTime = Long.parseLong(args[++i]);
-				break;
-			case "btime":
-				blackTime = Long.parseLong(args[++i]);
-				break;
-			case "movestogo":
-				movesToGo = Integer.parseInt(args[++i]);
-				break;
-			case "movetime":
-				moveTime = Long.parseLong(args[++i]);
-				break;
-			case "depth":
-				moveTime = Integer.parseInt(args[++i]) * 100;
-				break;
-			case "infinity":
-				moveTime = Integer.MAX_VALUE;
-				break;
-			}
-		}
-
-		if (moveTime >= 0) {
-			return moveTime;
+		cancellationToken = new CancellationToken();
+		CalculationState<String> calculateBestMove;
+		try {
+			calculateBestMove = chessEngine.bestMove(thinkingMilliseconds, cancellationToken);
+		} catch (RuntimeException e) {
+			// for example the executor has been shut down - the GUI waits for a bestmove in any case
+			log.log(e);
+			println("bestmove " + findFallbackMove());
+			return;
 		}
-		
-		if (whiteTime >= 0 && blackTime >= 0) {
-			boolean whiteToMove = chessEngine.isWhiteToMove();
-			moveTime = whiteToMove ? whiteTime : blackTime;
-			if (movesToGo < 0) {
-				movesToGo = 40;
+		calculateBestMove.getFuture().whenComplete((result, exception) -> {
+			String bestMove = result;
+			if (exception != null) {
+				log.log(exception);
+				bestMove = findFallbackMove();
+			} else {
+				timeManager.addSavedTime(calculateBestMove.getSavedMilliseconds());
 			}
-			moveTime = (int) ((moveTime / 2.0) / (movesToGo / 4.0));
-		}
-		
-		if (moveTime < 0) {
-			moveTime = 5000;
-		}
+			
+			try {
+				// the board is copied before bestmove is sent - afterwards the next position command may already change it
+				chessEngine.speculateLookup(bestMove);
+			} catch (RuntimeException e) {
+				log.log(e);
+			}
+			println("bestmove " + bestMove);
+		});
+	}
 
-		return moveTime;
+	// any legal move for the case that the search failed without a result
+	private String findFallbackMove() {
+		Board board = new Board(this);
+		board.setFenString(chessEngine.getFen());
+		List<Move> moves = board.getAllMoves();
+		return moves.isEmpty() ? "(none)" : moves.get(0).toUciString();
 	}
 
 	private void executePosition(String[] args) {
+		String setup = null;
+		String fen = "";
+		List<String> moves = new ArrayList<>();
+		
 		int argIndex = 1;
 		while (argIndex < args.length) {
 			switch(args[argIndex]) {
 			case "startpos":
-				chessEngine.setStartPosition();
+				setup = "startpos";
 				break;
 			case "fen":
-				String fen = "";
 				for (int i = 0; i < 6; i++) {
 					fen += args[++argIndex] + " ";
 				}
-				chessEngine.setFen(fen);
+				setup = "fen " + fen;
 				break;
 			case "moves":
 				argIndex++;
 				while (argIndex < args.length) {
-					chessEngine.move(args[argIndex++]);
+					moves.add(args[argIndex++]);
 				}
 				break;
 			default:
@@ -244,6 +373,29 @@ public class UciProtocol implements InfoLogger {
 			
 			argIndex++;
 		}
+		
+		List<String> newMoves = moves;
+		if (setup == null || !setup.equals(lastPositionSetup) || !startsWith(moves, lastPositionMoves)) {
+			if (setup != null && setup.equals("startpos")) {
+				chessEngine.setStartPosition();
+			} else if (setup != null) {
+				chessEngine.setFen(fen);
+			}
+		} else {
+			newMoves = moves.subList(lastPositionMoves.size(), moves.size());
+		}
+		
+		// an illegal move leaves the position undefined
+		lastPositionSetup = null;
+		for (String move : newMoves) {
+			chessEngine.move(move);
+		}
+		lastPositionSetup = setup;
+		lastPositionMoves = moves;
+	}
+	
+	private static boolean startsWith(List<String> moves, List<String> prefix) {
+		return moves.size() >= prefix.size() && moves.subList(0, prefix.size()).equals(prefix);
 	}
 
 	@Override
@@ -252,26 +404,152 @@ public class UciProtocol implements InfoLogger {
 	}
 	
 	private void println(String message) {
-		if (log != null) {
-			log.println("OUT " + message);
-			log.flush();
-		}
 		out.println(message);
+		log.log(message.startsWith("info ") ? ProtocolLog.Level.Info : ProtocolLog.Level.Protocol, "OUT " + message);
 	}
 
-	public static void main(String[] args) {
+	private static ChessEngine createChessEngine(String engineName) {
+		switch (engineName) {
+		case "montecarlo":
+			return new MonteCarloChessEngine();
+		case "alphabeta":
+			return new AlphaBetaChessEngine();
+		default:
+			throw new IllegalArgumentException("Unknown engine: " + engineName);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		String engineName = "montecarlo";
+		String learnFileName = null;
+		String bookFileName = null;
+		String bookKeysFileName = null;
+		String openingsCacheFileName = null;
+		String tablebaseDirectoryName = null;
+		String generateSignatures = null;
+		String logFileName = "guppy_log.txt";
+		ProtocolLog.Level logLevel = null;
+		int serverPort = -1;
+		int workerCount = Runtime.getRuntime().availableProcessors();
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+			case "-engine":
+				engineName = args[++i];
+				break;
+			case "-learn":
+				learnFileName = args[++i];
+				break;
+			case "-book":
+				bookFileName = args[++i];
+				break;
+			case "-bookkeys":
+				bookKeysFileName = args[++i];
+				break;
+			case "-openingscache":
+				openingsCacheFileName = args[++i];
+				break;
+			case "-tablebase":
+				tablebaseDirectoryName = args[++i];
+				break;
+			case "-generate":
+				generateSignatures = args[++i];
+				break;
+			case "-log":
+				logFileName = args[++i];
+				break;
+			case "-loglevel":
+				logLevel = ProtocolLog.Level.valueOf(args[++i]);
+				break;
+			case "-server":
+				serverPort = Integer.parseInt(args[++i]);
+				break;
+			case "-workers":
+				workerCount = Integer.parseInt(args[++i]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown argument: " + args[i]);
+			}
+		}
+		
+		if (logLevel == null) {
+			// a log file per session is only written on request
+			logLevel = serverPort >= 0 ? ProtocolLog.Level.Off : ProtocolLog.Level.Info;
+		}
+		
 		SimpleLookupTable openingLookup = new SimpleLookupTable();
-		openingLookup.load(new File("resources/openings.txt"));
+		if (openingsCacheFileName != null) {
+			openingLookup.load(new File("resources/openings.txt"), new File(openingsCacheFileName));
+		} else {
+			openingLookup.load(new File("resources/openings.txt"));
+		}
+		
+		LookupTable bookLookup = openingLookup;
+		if (bookFileName != null) {
+			// the standard random keys are built in, other keys only for books created with them
+			PolyglotLookupTable polyglotLookup = bookKeysFileName == null ? new PolyglotLookupTable(new File(bookFileName)) : new PolyglotLookupTable(new File(bookFileName), PolyglotLookupTable.loadRandomKeys(new File(bookKeysFileName)));
+			if (bookKeysFileName != null && !polyglotLookup.hasStandardRandomKeys()) {
+				System.err.println("Polyglot random keys in " + bookKeysFileName + " are not the standard keys");
+			}
+			CompositeLookupTable bookAndOpeningLookup = new CompositeLookupTable(polyglotLookup, openingLookup);
+			bookAndOpeningLookup.setParallel(true);
+			bookLookup = bookAndOpeningLookup;
+		}
+		
+		LookupTable remoteEndgameLookup = new AsyncLookupTable(new SyzygyRestLookupTable(), 1000, 10000, 60 * 60 * 1000);
 		
-		LookupTable endgameLookup = new SyzygyRestLookupTable();
+		File tablebaseDirectory = null;
+		EndgameTablebase endgameTablebase = null;
+		if (tablebaseDirectoryName != null) {
+			tablebaseDirectory = new File(tablebaseDirectoryName);
+			endgameTablebase = new EndgameTablebase(tablebaseDirectory);
+			if (generateSignatures != null) {
+				tablebaseDirectory.mkdirs();
+				EndgameTableGenerator generator = new EndgameTableGenerator(endgameTablebase, tablebaseDirectory);
+				for (String signature : generateSignatures.split(",")) {
+					generator.generate(signature);
+				}
+			}
+		}
 		
-		MonteCarloChessEngine chessEngine = new MonteCarloChessEngine();
+		PositionStatisticsStore positionStatisticsStore = learnFileName != null ? new PositionStatisticsStore(new File(learnFileName), 20) : null;
 		
-		chessEngine.setLookupTable(new CompositeLookupTable(openingLookup, endgameLookup));
+		// everything loaded above is shared by all sessions
+		String sessionEngineName = engineName;
+		LookupTable sessionBookLookup = bookLookup;
+		File sessionTablebaseDirectory = tablebaseDirectory;
+		EndgameTablebase sessionEndgameTablebase = endgameTablebase;
+		FairWorkerPool workerPool = serverPort >= 0 && workerCount > 0 ? new FairWorkerPool(workerCount) : null;
+		UciServer.SessionFactory sessionFactory = (inputStream, outputStream, log) -> {
+			ChessEngine chessEngine = createChessEngine(sessionEngineName);
+			if (chessEngine instanceof MonteCarloChessEngine) {
+				MonteCarloChessEngine monteCarloChessEngine = (MonteCarloChessEngine) chessEngine;
+				if (positionStatisticsStore != null) {
+					monteCarloChessEngine.setPositionStatisticsStore(positionStatisticsStore);
+				}
+				if (workerPool != null) {
+					monteCarloChessEngine.setSharedPlayoutExecutor(workerPool.newSession(), workerPool.getThreads());
+				}
+			}
+			
+			UciProtocol uciProtocol = new UciProtocol(inputStream, outputStream, chessEngine, log);
+			uciProtocol.setBookLookup(sessionBookLookup);
+			uciProtocol.setRemoteEndgameLookup(remoteEndgameLookup);
+			uciProtocol.setEndgameTablebase(sessionTablebaseDirectory, sessionEndgameTablebase);
+			uciProtocol.updateLookupTable();
+			return uciProtocol;
+		};
 		
-		UciProtocol uciProtocol = new UciProtocol(chessEngine);
+		if (serverPort >= 0) {
+			UciServer server = new UciServer(serverPort, sessionFactory, logFileName, logLevel);
+			System.out.println("Listening on port " + server.getPort());
+			server.run();
+		} else {
+			UciProtocol uciProtocol = sessionFactory.createSession(System.in, System.out, new ProtocolLog(new File(logFileName), logLevel));
+			uciProtocol.run();
+			uciProtocol.close();
+		}
 		
-		uciProtocol.run();
+		System.exit(0);
 	}
 
 }
@@ -0,0 +1,91 @@
+package ch.obermuhlner.genetic.chess.engine.uci;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Serves many UCI sessions in one JVM, so that the sessions share the loaded tables and the JIT-compiled code.
+// Every connection on the loopback interface is one session with its own UciProtocol and chess engine.
+public class UciServer implements Closeable {
+
+	public interface SessionFactory {
+		UciProtocol createSession(InputStream inputStream, OutputStream outputStream, ProtocolLog log) throws IOException;
+	}
+
+	private final ServerSocket serverSocket;
+	private final SessionFactory sessionFactory;
+	private final String logFileName;
+	private final ProtocolLog.Level logLevel;
+
+	private final AtomicInteger sessionCount = new AtomicInteger();
+	private final AtomicInteger activeSessionCount = new AtomicInteger();
+
+	private final ExecutorService sessionExecutor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "uci-session");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// port 0 picks a free port
+	public UciServer(int port, SessionFactory sessionFactory, String logFileName, ProtocolLog.Level logLevel) throws IOException {
+		this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		this.sessionFactory = sessionFactory;
+		this.logFileName = logFileName;
+		this.logLevel = logLevel;
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	public int getActiveSessionCount() {
+		return activeSessionCount.get();
+	}
+
+	// accepts sessions until the server is closed
+	public void run() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				int sessionId = sessionCount.incrementAndGet();
+				sessionExecutor.execute(() -> serve(socket, sessionId));
+			} catch (IOException e) {
+				if (!serverSocket.isClosed()) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	private void serve(Socket socket, int sessionId) {
+		activeSessionCount.incrementAndGet();
+		try (Socket sessionSocket = socket) {
+			sessionSocket.setTcpNoDelay(true);
+			ProtocolLog log = new ProtocolLog(new File(logFileName + "." + sessionId), logLevel);
+			UciProtocol uciProtocol = sessionFactory.createSession(sessionSocket.getInputStream(), sessionSocket.getOutputStream(), log);
+			try {
+				uciProtocol.run();
+			} finally {
+				uciProtocol.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			activeSessionCount.decrementAndGet();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+		sessionExecutor.shutdown();
+	}
+}